@@ -8,6 +8,7 @@ import 'dart:io' as io;
 
 import 'package:flutter/foundation.dart';
 import 'package:flutter/material.dart';
+import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart' hide test;
 import 'package:path/path.dart';
 import 'package:sqflite/sqflite.dart';
@@ -374,5 +375,65 @@ void main() {
         }
       }
     });
+    test('androidQueryStream closed with its database', () async {
+      if (!kIsWeb && io.Platform.isAndroid) {
+        const channel = MethodChannel('com.tekartik.sqflite');
+        const queryStream = EventChannel('com.tekartik.sqflite/queryStream');
+        var events = <Map>[];
+        var done = Completer<void>();
+        var subscription = queryStream.receiveBroadcastStream().listen((
+          event,
+        ) {
+          var map = event as Map;
+          events.add(map);
+          if (map['done'] == true) {
+            done.complete();
+          }
+        });
+        try {
+          final path = join(await getDatabasesPath(), 'test_query_stream.db');
+          await deleteDatabase(path);
+          var id =
+              (await channel.invokeMethod<Map>('openDatabase', {
+                    'path': path,
+                  }))!['id']
+                  as int;
+          await channel.invokeMethod<void>('execute', {
+            'id': id,
+            'sql': 'CREATE TABLE Test (id INTEGER PRIMARY KEY)',
+          });
+          for (var i = 1; i <= 5; i++) {
+            await channel.invokeMethod<void>('execute', {
+              'id': id,
+              'sql': 'INSERT INTO Test (id) VALUES (?)',
+              'arguments': [i],
+            });
+          }
+          // First page returned, the next one streamed, the others waiting for credit
+          var result = (await channel.invokeMethod<Map>('query', {
+            'id': id,
+            'sql': 'SELECT id FROM Test',
+            'cursorPageSize': 1,
+            'stream': true,
+            'credit': 1,
+          }))!;
+          var cursorId = result['cursorId'] as int;
+          expect(result['rows'], [
+            [1],
+          ]);
+          await channel.invokeMethod<void>('closeDatabase', {'id': id});
+
+          await done.future.timeout(const Duration(seconds: 5));
+          var last = events.last;
+          expect(last['cursorId'], cursorId);
+          expect(
+            (last['error'] as Map)['message'],
+            contains('closed with its database'),
+          );
+        } finally {
+          await subscription.cancel();
+        }
+      }
+    });
   });
 }
@@ -0,0 +1,368 @@
+package com.tekartik.sqflite;
+
+import static com.tekartik.sqflite.Constant.PARAM_COLUMNS;
+import static com.tekartik.sqflite.Constant.PARAM_COLUMN_NULLS;
+import static com.tekartik.sqflite.Constant.PARAM_COLUMN_VALUES;
+import static com.tekartik.sqflite.Constant.PARAM_ROW_COUNT;
+import static com.tekartik.sqflite.Constant.PARAM_STRINGS;
+
+import android.database.Cursor;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar query results, for the `columnar` result format.
+ * <p>
+ * Each column is sent as a single typed value, avoiding one boxed object per value:
+ * long[] for integers, double[] for floats, a list of strings or a list of blobs.
+ * A column mixing storage classes falls back to a list of values, a column
+ * having only null values has null values.
+ * <p>
+ * Null values are flagged in a bitmap (bit i % 8 of byte i / 8 set when row i is null),
+ * only sent for columns having null values.
+ * <p>
+ * With a string dictionary, each distinct string of the page is sent once in a list and
+ * string columns are sent as int[] indices in this list.
+ */
+class ColumnarResults {
+    // Column with values of different storage classes
+    static final int FIELD_TYPE_MIXED = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // Larger columns grow when needed
+    private static final int MAX_INITIAL_CAPACITY = 4096;
+
+    private final String[] columnNames;
+    private final Column[] columns;
+    @Nullable
+    private final StringDictionary dictionary;
+    private int rowCount;
+    // Estimated size in bytes
+    private long size;
+
+    ColumnarResults(String[] columnNames, int capacity) {
+        this(columnNames, capacity, false);
+    }
+
+    /**
+     * @param stringDictionary true to send string columns as indices in a page dictionary
+     */
+    ColumnarResults(String[] columnNames, int capacity, boolean stringDictionary) {
+        this.columnNames = columnNames;
+        dictionary = stringDictionary ? new StringDictionary() : null;
+        columns = new Column[columnNames.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(capacity > 0 ? Math.min(capacity, MAX_INITIAL_CAPACITY) : DEFAULT_CAPACITY, dictionary);
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    Column getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * Add the current cursor row.
+     */
+    void addRow(Cursor cursor) {
+        for (int i = 0; i < columns.length; i++) {
+            Column column = columns[i];
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    column.addLong(cursor.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    column.addDouble(cursor.getDouble(i));
+                    break;
+                case Cursor.FIELD_TYPE_STRING: {
+                    String value = cursor.getString(i);
+                    size += Utils.valueSize(value) - 8;
+                    column.addObject(Cursor.FIELD_TYPE_STRING, value);
+                    break;
+                }
+                case Cursor.FIELD_TYPE_BLOB: {
+                    byte[] value = cursor.getBlob(i);
+                    size += Utils.valueSize(value) - 8;
+                    column.addObject(Cursor.FIELD_TYPE_BLOB, value);
+                    break;
+                }
+                default:
+                    column.addNull();
+                    break;
+            }
+        }
+        size += 8L * columns.length;
+        rowCount++;
+    }
+
+    /**
+     * Called once a value was added to each column directly.
+     */
+    void endRow() {
+        rowCount++;
+    }
+
+    /**
+     * @param withColumns false to omit the column names
+     */
+    Map<String, Object> toMap(boolean withColumns) {
+        Map<String, Object> map = new HashMap<>();
+        List<Object> values = new ArrayList<>(columns.length);
+        List<byte[]> nulls = new ArrayList<>(columns.length);
+        for (Column column : columns) {
+            values.add(column.getValues());
+            nulls.add(column.getNulls());
+        }
+        if (withColumns) {
+            map.put(PARAM_COLUMNS, Arrays.asList(columnNames));
+        }
+        map.put(PARAM_ROW_COUNT, rowCount);
+        map.put(PARAM_COLUMN_VALUES, values);
+        map.put(PARAM_COLUMN_NULLS, nulls);
+        if (dictionary != null) {
+            map.put(PARAM_STRINGS, dictionary.strings);
+        }
+        return map;
+    }
+
+    /**
+     * Distinct strings of a page.
+     */
+    static class StringDictionary {
+        final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        int indexOf(String value) {
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = strings.size();
+                indices.put(value, index);
+                strings.add(value);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Values of one column.
+     */
+    static class Column {
+        // Cursor.FIELD_TYPE_XXX or FIELD_TYPE_MIXED, FIELD_TYPE_NULL until the first value
+        int type = Cursor.FIELD_TYPE_NULL;
+        private int capacity;
+        private int size;
+        private long[] longs;
+        private double[] doubles;
+        private List<Object> objects;
+        // String indices, when using a dictionary
+        private int[] indices;
+        @Nullable
+        private final StringDictionary dictionary;
+        @Nullable
+        private byte[] nulls;
+
+        Column(int capacity) {
+            this(capacity, null);
+        }
+
+        Column(int capacity, @Nullable StringDictionary dictionary) {
+            this.capacity = capacity;
+            this.dictionary = dictionary;
+        }
+
+        void addNull() {
+            int length = (size >> 3) + 1;
+            if (nulls == null) {
+                nulls = new byte[Math.max((capacity + 7) / 8, length)];
+            } else if (nulls.length < length) {
+                nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, length));
+            }
+            nulls[size >> 3] |= (byte) (1 << (size & 7));
+            switch (type) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    ensureLongCapacity();
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    ensureDoubleCapacity();
+                    break;
+                case Cursor.FIELD_TYPE_NULL:
+                    break;
+                default:
+                    if (isIndexed()) {
+                        ensureIndexCapacity();
+                    } else {
+                        objects.add(null);
+                    }
+                    break;
+            }
+            size++;
+        }
+
+        void addLong(long value) {
+            if (setType(Cursor.FIELD_TYPE_INTEGER)) {
+                ensureLongCapacity();
+                longs[size] = value;
+            } else {
+                objects.add(value);
+            }
+            size++;
+        }
+
+        void addDouble(double value) {
+            if (setType(Cursor.FIELD_TYPE_FLOAT)) {
+                ensureDoubleCapacity();
+                doubles[size] = value;
+            } else {
+                objects.add(value);
+            }
+            size++;
+        }
+
+        /**
+         * @param type Cursor.FIELD_TYPE_STRING or Cursor.FIELD_TYPE_BLOB
+         */
+        void addObject(int type, Object value) {
+            if (setType(type) && isIndexed()) {
+                ensureIndexCapacity();
+                indices[size] = dictionary.indexOf((String) value);
+            } else {
+                objects.add(value);
+            }
+            size++;
+        }
+
+        // String column using the dictionary
+        private boolean isIndexed() {
+            return type == Cursor.FIELD_TYPE_STRING && dictionary != null;
+        }
+
+        /**
+         * @return true if the column has this type, false if the values are mixed
+         */
+        private boolean setType(int valueType) {
+            if (type == valueType) {
+                return true;
+            }
+            if (type == Cursor.FIELD_TYPE_NULL) {
+                type = valueType;
+                if (valueType != Cursor.FIELD_TYPE_INTEGER && valueType != Cursor.FIELD_TYPE_FLOAT && !isIndexed()) {
+                    // Previous values were null
+                    objects = new ArrayList<>(Math.max(capacity, size + 1));
+                    for (int i = 0; i < size; i++) {
+                        objects.add(null);
+                    }
+                }
+                return true;
+            }
+            if (type != FIELD_TYPE_MIXED) {
+                objects = getObjects();
+                longs = null;
+                doubles = null;
+                indices = null;
+                type = FIELD_TYPE_MIXED;
+            }
+            return false;
+        }
+
+        private void ensureLongCapacity() {
+            if (longs == null) {
+                capacity = Math.max(capacity, size + 1);
+                longs = new long[capacity];
+            } else if (longs.length <= size) {
+                capacity = longs.length * 2;
+                longs = Arrays.copyOf(longs, capacity);
+            }
+        }
+
+        private void ensureDoubleCapacity() {
+            if (doubles == null) {
+                capacity = Math.max(capacity, size + 1);
+                doubles = new double[capacity];
+            } else if (doubles.length <= size) {
+                capacity = doubles.length * 2;
+                doubles = Arrays.copyOf(doubles, capacity);
+            }
+        }
+
+        private void ensureIndexCapacity() {
+            if (indices == null) {
+                capacity = Math.max(capacity, size + 1);
+                indices = new int[capacity];
+            } else if (indices.length <= size) {
+                capacity = indices.length * 2;
+                indices = Arrays.copyOf(indices, capacity);
+            }
+        }
+
+        private boolean isNull(int index) {
+            return nulls != null && (index >> 3) < nulls.length && (nulls[index >> 3] & (1 << (index & 7))) != 0;
+        }
+
+        // Box the primitive values or strings, when the column has mixed values
+        private List<Object> getObjects() {
+            if (objects != null) {
+                return objects;
+            }
+            List<Object> list = new ArrayList<>(Math.max(capacity, size + 1));
+            for (int i = 0; i < size; i++) {
+                if (isNull(i)) {
+                    list.add(null);
+                } else if (type == Cursor.FIELD_TYPE_INTEGER) {
+                    list.add(longs[i]);
+                } else if (type == Cursor.FIELD_TYPE_STRING) {
+                    list.add(dictionary.strings.get(indices[i]));
+                } else {
+                    list.add(doubles[i]);
+                }
+            }
+            return list;
+        }
+
+        /**
+         * @return long[], double[], int[] string indices, a list or null if all values are null
+         */
+        @Nullable
+        Object getValues() {
+            switch (type) {
+                case Cursor.FIELD_TYPE_NULL:
+                    return null;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    return longs.length == size ? longs : Arrays.copyOf(longs, size);
+                case Cursor.FIELD_TYPE_FLOAT:
+                    return doubles.length == size ? doubles : Arrays.copyOf(doubles, size);
+                case Cursor.FIELD_TYPE_STRING:
+                    if (dictionary != null) {
+                        return indices.length == size ? indices : Arrays.copyOf(indices, size);
+                    }
+                    return objects;
+                default:
+                    return objects;
+            }
+        }
+
+        /**
+         * @return the null bitmap, null if there is no null value
+         */
+        @Nullable
+        byte[] getNulls() {
+            if (nulls == null) {
+                return null;
+            }
+            int length = (size + 7) / 8;
+            return nulls.length == length ? nulls : Arrays.copyOf(nulls, length);
+        }
+    }
+}
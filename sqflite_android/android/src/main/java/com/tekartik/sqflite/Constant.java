@@ -8,6 +8,8 @@ public class Constant {
 
     //  Can be used as the name MethodChannel or to register with
     static final public String PLUGIN_KEY = "com.tekartik.sqflite";
+    // Event channel for the pages of streamed cursors
+    static final public String QUERY_STREAM_KEY = "com.tekartik.sqflite/queryStream";
 
     static final public String METHOD_GET_PLATFORM_VERSION = "getPlatformVersion";
     static final public String METHOD_GET_DATABASES_PATH = "getDatabasesPath";
@@ -19,10 +21,17 @@ public class Constant {
     static final public String METHOD_EXECUTE = "execute";
     static final public String METHOD_QUERY = "query";
     static final public String METHOD_QUERY_CURSOR_NEXT = "queryCursorNext";
+    static final public String METHOD_QUERY_STREAM_CREDIT = "queryStreamCredit";
+    static final public String METHOD_DELETE_RESULT_FILE = "deleteResultFile";
     static final public String METHOD_UPDATE = "update";
     static final public String METHOD_BATCH = "batch";
     static final public String METHOD_DELETE_DATABASE = "deleteDatabase";
     static final public String METHOD_DATABASE_EXISTS = "databaseExists";
+    static final public String METHOD_INSERT_MANY = "insertMany";
+    static final public String METHOD_PREPARE = "prepare";
+    static final public String METHOD_EXECUTE_PREPARED = "executePrepared";
+    static final public String METHOD_QUERY_PREPARED = "queryPrepared";
+    static final public String METHOD_FINALIZE = "finalize";
     // true when entering, false when leaving, null otherwise, should be named inTransactionChange instead
     public static final String PARAM_IN_TRANSACTION_CHANGE = "inTransaction";
     // Set for calls within a transaction
@@ -35,14 +44,70 @@ public class Constant {
     public static final String PARAM_RECOVERED_IN_TRANSACTION = "recoveredInTransaction";
     public static final String PARAM_SQL = "sql";
     public static final String PARAM_SQL_ARGUMENTS = "arguments";
+    // For insertMany, list of arguments
+    public static final String PARAM_SQL_ARGUMENTS_LIST = "argumentsList";
     public static final String PARAM_NO_RESULT = "noResult";
     public static final String PARAM_CONTINUE_OR_ERROR = "continueOnError";
+    // For batch, run all operations in a single savepoint, nested in the current transaction if any. Boolean
+    public static final String PARAM_ATOMIC = "atomic";
     public static final String PARAM_COLUMNS = "columns";
     public static final String PARAM_ROWS = "rows";
+    // For query, result format. String, RESULT_FORMAT_XXX, default to rows
+    public static final String PARAM_RESULT_FORMAT = "resultFormat";
+    public static final String RESULT_FORMAT_ROWS = "rows";
+    // One typed list per column
+    public static final String RESULT_FORMAT_COLUMNAR = "columnar";
+    // Columnar, string columns being indices in the page strings
+    public static final String RESULT_FORMAT_COLUMNAR_DICTIONARY = "columnarDictionary";
+    // Columns and rows packed in a single byte array, see PackedRows
+    public static final String RESULT_FORMAT_PACKED = "packed";
+    // Rows as a UTF-8 JSON array of objects in a single byte array, see JsonRows
+    public static final String RESULT_FORMAT_JSON = "json";
+    // Columnar and file results
+    public static final String PARAM_ROW_COUNT = "rowCount";
+    public static final String PARAM_COLUMN_VALUES = "columnValues";
+    public static final String PARAM_COLUMN_NULLS = "columnNulls";
+    // Distinct strings of a page, for the columnar dictionary format
+    public static final String PARAM_STRINGS = "strings";
+    // Packed results. byte[]
+    public static final String PARAM_PACKED_ROWS = "packedRows";
+    // JSON results. byte[]
+    public static final String PARAM_JSON_ROWS = "jsonRows";
+    // For query, write the whole result to a file, in the json or packed (default) format, without cursor.
+    // The file must be deleted using deleteResultFile. Boolean
+    public static final String PARAM_RESULT_FILE = "resultFile";
+    // Result file path, also the deleteResultFile argument. String
+    public static final String PARAM_RESULT_FILE_PATH = "resultFilePath";
+    // Result file length in bytes. Long
+    public static final String PARAM_RESULT_FILE_LENGTH = "resultFileLength";
     // For query to use a cursor. Integer.
     public static final String PARAM_CURSOR_PAGE_SIZE = "cursorPageSize";
+    // For query to use a cursor with pages limited by their estimated size in bytes. Integer.
+    // The effective page size (row count) is returned as cursorPageSize.
+    public static final String PARAM_CURSOR_PAGE_MAX_SIZE = "cursorPageMaxSize";
+    // For query with a cursor, only send the column names with the first page. Boolean.
+    public static final String PARAM_COLUMNS_ONCE = "columnsOnce";
+    // For query without cursor, return a cursor instead of failing when the result is larger than
+    // androidMaxResultRows or androidMaxResultSize. Boolean.
+    public static final String PARAM_CURSOR_ON_OVERFLOW = "cursorOnOverflow";
+    // For query with a cursor, send the next pages through the query stream, the first page being
+    // the query result. Each event is a page with its cursorId, done being set on the last page,
+    // or an error. Events might be received before the query result. The query fails if the
+    // query stream has no listener, pages are only read while Dart listens. Boolean.
+    public static final String PARAM_STREAM = "stream";
+    // For streamed query and queryStreamCredit, count of pages Dart is ready to receive. Integer.
+    public static final String PARAM_CREDIT = "credit";
+    // Last page of a streamed cursor. Boolean
+    public static final String PARAM_DONE = "done";
+    // Task priority, for all database calls. Integer, PRIORITY_XXX, default to normal
+    public static final String PARAM_PRIORITY = "priority";
+    public static final int PRIORITY_BACKGROUND = -1;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_INTERACTIVE = 1;
     // For queryCursorNext. Integer
     public static final String PARAM_CURSOR_ID = "cursorId";
+    // For prepare result and executePrepared, queryPrepared, finalize. Integer
+    public static final String PARAM_STATEMENT_ID = "statementId";
     // For queryCursorNext. Boolean
     public static final String PARAM_CANCEL = "cancel";
     // in each operation
@@ -69,6 +134,19 @@ public class Constant {
     static final String PARAM_LOG_LEVEL = "logLevel"; // int
     static final String PARAM_THREAD_PRIORITY = "androidThreadPriority"; // int
     static final String PARAM_THREAD_COUNT = "androidThreadCount"; // int
+    static final String PARAM_MIN_THREAD_COUNT = "androidMinThreadCount"; // int
+    static final String PARAM_THREAD_IDLE_TIMEOUT = "androidThreadIdleTimeout"; // int, ms
+    static final String PARAM_WORKER_POOL_LINGER = "androidWorkerPoolLinger"; // int, ms
+    static final String PARAM_READ_CONNECTION_COUNT = "androidReadConnectionCount"; // int
+    static final String PARAM_STATEMENT_CACHE_SIZE = "androidStatementCacheSize"; // int
+    static final String PARAM_CURSOR_PREFETCH_SIZE = "androidCursorPrefetchSize"; // int, bytes
+    static final String PARAM_CURSOR_IDLE_TIMEOUT = "androidCursorIdleTimeout"; // int, ms
+    static final String PARAM_MAX_CURSOR_COUNT = "androidMaxCursorCount"; // int
+    static final String PARAM_CURSOR_WINDOW_POOL_SIZE = "androidCursorWindowPoolSize"; // int
+    static final String PARAM_CURSOR_WINDOW_SIZE = "androidCursorWindowSize"; // int, bytes
+    static final String PARAM_MAX_RESULT_ROWS = "androidMaxResultRows"; // int
+    static final String PARAM_MAX_RESULT_SIZE = "androidMaxResultSize"; // int, bytes
+    static final String PARAM_INTERACTIVE_THREAD_PRIORITY = "androidInteractiveThreadPriority"; // int
 
     // debugMode
     static final String PARAM_CMD = "cmd"; // debugMode cmd: get/set
@@ -79,6 +157,7 @@ public class Constant {
     static final String ERROR_BAD_PARAM = "bad_param"; // internal only
     static final String ERROR_OPEN_FAILED = "open_failed"; // msg
     static final String ERROR_DATABASE_CLOSED = "database_closed"; // msg
+    static final String ERROR_RESULT_TOO_LARGE = "result_too_large"; // msg
     // memory database path
     static final String MEMORY_DATABASE_PATH = ":memory:";
 }
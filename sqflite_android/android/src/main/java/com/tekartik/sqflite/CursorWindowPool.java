@@ -0,0 +1,69 @@
+package com.tekartik.sqflite;
+
+import android.database.CursorWindow;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+
+/**
+ * Reusable cursor windows of a database.
+ * <p>
+ * The pool keeps its own reference on each window so that closing a cursor, which
+ * closes its window, does not free it. Windows are cleared before being reused.
+ */
+class CursorWindowPool {
+    private static final String WINDOW_NAME = "sqflite";
+
+    private final int maxSize;
+    // Window size in bytes, 0 for the platform default
+    private final long windowSize;
+    private final ArrayDeque<CursorWindow> windows = new ArrayDeque<>();
+    private boolean closed;
+
+    /**
+     * @param maxSize    max count of idle windows kept
+     * @param windowSize window size in bytes (Android 9+), 0 for the platform default
+     */
+    CursorWindowPool(int maxSize, long windowSize) {
+        this.maxSize = maxSize;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * The caller must acquire a reference for the cursor it gives the window to.
+     */
+    synchronized CursorWindow acquire() {
+        CursorWindow window = windows.poll();
+        if (window == null) {
+            window = createWindow();
+        }
+        return window;
+    }
+
+    /**
+     * Called once the cursor using the window, if any, is closed.
+     */
+    synchronized void release(CursorWindow window) {
+        if (!closed && windows.size() < maxSize) {
+            window.clear();
+            windows.add(window);
+        } else {
+            window.close();
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        for (CursorWindow window : windows) {
+            window.close();
+        }
+        windows.clear();
+    }
+
+    private CursorWindow createWindow() {
+        if (windowSize > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return new CursorWindow(WINDOW_NAME, windowSize);
+        }
+        return new CursorWindow(WINDOW_NAME);
+    }
+}
@@ -2,17 +2,44 @@ package com.tekartik.sqflite;
 
 import static com.tekartik.sqflite.Constant.EMPTY_STRING_ARRAY;
 import static com.tekartik.sqflite.Constant.ERROR_BAD_PARAM;
+import static com.tekartik.sqflite.Constant.ERROR_RESULT_TOO_LARGE;
 import static com.tekartik.sqflite.Constant.METHOD_EXECUTE;
 import static com.tekartik.sqflite.Constant.METHOD_INSERT;
 import static com.tekartik.sqflite.Constant.METHOD_QUERY;
 import static com.tekartik.sqflite.Constant.METHOD_UPDATE;
+import static com.tekartik.sqflite.Constant.PARAM_ATOMIC;
 import static com.tekartik.sqflite.Constant.PARAM_CANCEL;
 import static com.tekartik.sqflite.Constant.PARAM_COLUMNS;
+import static com.tekartik.sqflite.Constant.PARAM_COLUMNS_ONCE;
+import static com.tekartik.sqflite.Constant.PARAM_CREDIT;
 import static com.tekartik.sqflite.Constant.PARAM_CURSOR_ID;
+import static com.tekartik.sqflite.Constant.PARAM_CURSOR_ON_OVERFLOW;
+import static com.tekartik.sqflite.Constant.PARAM_CURSOR_PAGE_MAX_SIZE;
 import static com.tekartik.sqflite.Constant.PARAM_CURSOR_PAGE_SIZE;
+import static com.tekartik.sqflite.Constant.PARAM_DONE;
+import static com.tekartik.sqflite.Constant.PARAM_ERROR;
+import static com.tekartik.sqflite.Constant.PARAM_ERROR_CODE;
+import static com.tekartik.sqflite.Constant.PARAM_ERROR_MESSAGE;
+import static com.tekartik.sqflite.Constant.PARAM_JSON_ROWS;
+import static com.tekartik.sqflite.Constant.PARAM_METHOD;
 import static com.tekartik.sqflite.Constant.PARAM_OPERATIONS;
+import static com.tekartik.sqflite.Constant.PARAM_PACKED_ROWS;
+import static com.tekartik.sqflite.Constant.PARAM_RESULT_FILE;
+import static com.tekartik.sqflite.Constant.PARAM_RESULT_FILE_LENGTH;
+import static com.tekartik.sqflite.Constant.PARAM_RESULT_FILE_PATH;
+import static com.tekartik.sqflite.Constant.PARAM_RESULT_FORMAT;
 import static com.tekartik.sqflite.Constant.PARAM_ROWS;
+import static com.tekartik.sqflite.Constant.PARAM_ROW_COUNT;
+import static com.tekartik.sqflite.Constant.PARAM_SQL;
+import static com.tekartik.sqflite.Constant.PARAM_SQL_ARGUMENTS_LIST;
+import static com.tekartik.sqflite.Constant.PARAM_STATEMENT_ID;
+import static com.tekartik.sqflite.Constant.PARAM_STREAM;
 import static com.tekartik.sqflite.Constant.PARAM_TRANSACTION_ID;
+import static com.tekartik.sqflite.Constant.PRIORITY_BACKGROUND;
+import static com.tekartik.sqflite.Constant.RESULT_FORMAT_COLUMNAR;
+import static com.tekartik.sqflite.Constant.RESULT_FORMAT_COLUMNAR_DICTIONARY;
+import static com.tekartik.sqflite.Constant.RESULT_FORMAT_JSON;
+import static com.tekartik.sqflite.Constant.RESULT_FORMAT_PACKED;
 import static com.tekartik.sqflite.Constant.TAG;
 import static com.tekartik.sqflite.Constant.TRANSACTION_ID_FORCE;
 import static com.tekartik.sqflite.Utils.cursorRowToList;
@@ -21,14 +48,22 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.CursorWrapper;
 import android.database.DatabaseErrorHandler;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteCantOpenDatabaseException;
 import android.database.sqlite.SQLiteCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -37,17 +72,25 @@ import androidx.annotation.VisibleForTesting;
 import com.tekartik.sqflite.operation.BatchOperation;
 import com.tekartik.sqflite.operation.MethodCallOperation;
 import com.tekartik.sqflite.operation.Operation;
+import com.tekartik.sqflite.operation.PreparedOperation;
 import com.tekartik.sqflite.operation.QueuedOperation;
 import com.tekartik.sqflite.operation.SqlErrorInfo;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
@@ -56,8 +99,17 @@ class Database {
     // To turn on when supported fully
     // 2022-09-14 experiments show several corruption issue.
     final static boolean WAL_ENABLED_BY_DEFAULT = false;
+    private static final String INSERT_MANY_SAVEPOINT = "sqflite_insert_many";
+    private static final String BATCH_SAVEPOINT = "sqflite_batch";
+    private static final String BATCH_OPERATION_SAVEPOINT = "sqflite_batch_operation";
+    // Under the cache directory
+    private static final String RESULT_FILES_DIR_NAME = "sqflite_results";
+    // Bytes buffered before being written to a result file
+    private static final int RESULT_FILE_CHUNK_SIZE = 256 * 1024;
     private static final String WAL_ENABLED_META_NAME = "com.tekartik.sqflite.wal_enabled";
     static private Boolean walGloballyEnabled;
+    // Files left by a previous process are purged once, before the first open
+    static private boolean resultFilesPurged;
     final boolean singleInstance;
     @NonNull
     final String path;
@@ -67,11 +119,47 @@ class Database {
     final Context context;
     /// Delayed operations not in the current transaction.
     final List<QueuedOperation> noTransactionOperationQueue = new ArrayList<>();
-    final Map<Integer, SqfliteCursor> cursors = new HashMap<>();
+    // Access ordered, least recently used first
+    final Map<Integer, SqfliteCursor> cursors = new LinkedHashMap<>(16, 0.75f, true);
+    final Map<Integer, SqflitePreparedStatement> preparedStatements = new HashMap<>();
     // Set by plugin
     public DatabaseWorkerPool databaseWorkerPool;
+    // Set by plugin, max count of read-only connections in WAL mode, 0 to disable
+    public int readConnectionCount;
+    // Set by plugin, max count of compiled statements kept, 0 to disable
+    public int statementCacheSize;
+    // Set by plugin, max size in bytes of a cursor page read ahead, 0 to disable
+    public int cursorPrefetchSize;
+    // Set by plugin, delay in ms after which an unused cursor is closed, 0 to disable
+    public long cursorIdleTimeout;
+    // Set by plugin, max count of opened cursors, the least recently used are closed first, 0 for no limit
+    public int maxCursorCount;
+    // Set by plugin, max count of idle cursor windows kept for reuse, 0 to disable
+    public int cursorWindowPoolSize;
+    // Set by plugin, cursor window size in bytes (Android 9+), 0 for the platform default
+    public long cursorWindowSize;
+    @Nullable
+    private CursorWindowPool cursorWindowPool;
+    // Set by plugin, sends the pages of streamed cursors
+    @Nullable
+    public QueryStreamHandler queryStreamHandler;
+    // Set by plugin, max row count of a query without cursor, 0 for no limit
+    public int maxResultRows;
+    // Set by plugin, max estimated size in bytes of a query without cursor, 0 for no limit
+    public int maxResultSize;
+    // Paths of the result files not deleted yet
+    private final Set<String> resultFiles = new HashSet<>();
+    // Compiled insert/update/delete statements by sql, writer only
+    @Nullable
+    private LruCache<String, SQLiteStatement> statementCache;
     @Nullable
     SQLiteDatabase sqliteDatabase;
+    // Idle read-only connections
+    private final ArrayDeque<SQLiteDatabase> readConnections = new ArrayDeque<>();
+    // All read-only connections opened
+    private final List<SQLiteDatabase> openedReadConnections = new ArrayList<>();
+    // True when opened for write in WAL mode
+    private boolean walEnabled;
     private int transactionDepth = 0;
     // Transaction
     private int lastTransactionId = 0; // incremental transaction id
@@ -79,6 +167,16 @@ class Database {
     private Integer currentTransactionId;
     // Cursors
     private int lastCursorId = 0; // incremental cursor id
+    private int openedCursorCount;
+    private int expiredCursorCount;
+    private int evictedCursorCount;
+    // Checks cursor expiration on the main thread
+    @Nullable
+    private Handler cursorExpiryHandler;
+    private boolean cursorExpiryScheduled;
+    private final Runnable checkCursorExpiry = () -> databaseWorkerPool.post(this, PRIORITY_BACKGROUND, this::closeExpiredCursors);
+    // Prepared statements
+    private int lastPreparedStatementId = 0; // incremental statement id
 
     Database(Context context, String path, int id, boolean singleInstance, int logLevel) {
         this.context = context;
@@ -156,11 +254,33 @@ class Database {
         }
 
         sqliteDatabase = SQLiteDatabase.openDatabase(path, null, flags);
+        // Read connections would not share an in memory database
+        walEnabled = !SqflitePlugin.isInMemoryPath(path) && sqliteDatabase.isWriteAheadLoggingEnabled();
+        if (statementCacheSize > 0) {
+            statementCache = new LruCache<String, SQLiteStatement>(statementCacheSize) {
+                @Override
+                protected void entryRemoved(boolean evicted, String sql, SQLiteStatement oldStatement, SQLiteStatement newStatement) {
+                    oldStatement.close();
+                }
+            };
+        }
+        openCursorWindowPool();
     }
 
     // Change default error handler to avoid erasing the existing file.
     public void openReadOnly() {
-        sqliteDatabase = SQLiteDatabase.openDatabase(path, null,
+        sqliteDatabase = openReadOnlyDatabase();
+        openCursorWindowPool();
+    }
+
+    private void openCursorWindowPool() {
+        if (cursorWindowPoolSize > 0) {
+            cursorWindowPool = new CursorWindowPool(cursorWindowPoolSize, cursorWindowSize);
+        }
+    }
+
+    private SQLiteDatabase openReadOnlyDatabase() {
+        return SQLiteDatabase.openDatabase(path, null,
                 SQLiteDatabase.OPEN_READONLY, new DatabaseErrorHandler() {
                     @Override
                     public void onCorruption(SQLiteDatabase dbObj) {
@@ -174,11 +294,53 @@ class Database {
     }
 
     public void close() {
-        if (!cursors.isEmpty()) {
-            if (LogLevel.hasSqlLevel(logLevel)) {
-                Log.d(TAG, getThreadLogPrefix() + cursors.size() + " cursor(s) are left opened");
+        List<SqfliteCursor> openedCursors;
+        synchronized (cursors) {
+            if (!cursors.isEmpty()) {
+                if (LogLevel.hasSqlLevel(logLevel)) {
+                    Log.d(TAG, getThreadLogPrefix() + cursors.size() + " cursor(s) are left opened");
+                }
+            }
+            openedCursors = new ArrayList<>(cursors.values());
+            if (cursorExpiryHandler != null) {
+                cursorExpiryHandler.removeCallbacks(checkCursorExpiry);
+                cursorExpiryScheduled = false;
             }
         }
+        // Release their windows and read transactions
+        for (SqfliteCursor sqfliteCursor : openedCursors) {
+            closeCursor(sqfliteCursor, "closed with its database");
+        }
+        synchronized (preparedStatements) {
+            for (SqflitePreparedStatement preparedStatement : preparedStatements.values()) {
+                preparedStatement.close();
+            }
+            preparedStatements.clear();
+        }
+        if (statementCache != null) {
+            statementCache.evictAll();
+        }
+        if (cursorWindowPool != null) {
+            cursorWindowPool.close();
+        }
+        // Not acknowledged
+        synchronized (resultFiles) {
+            for (String resultFile : resultFiles) {
+                deleteFile(new File(resultFile));
+            }
+            resultFiles.clear();
+        }
+        synchronized (readConnections) {
+            for (SQLiteDatabase readConnection : openedReadConnections) {
+                try {
+                    readConnection.close();
+                } catch (Exception e) {
+                    Log.e(TAG, getThreadLogPrefix() + "close read connection error: " + e);
+                }
+            }
+            openedReadConnections.clear();
+            readConnections.clear();
+        }
         sqliteDatabase.close();
     }
 
@@ -190,6 +352,55 @@ class Database {
         return sqliteDatabase;
     }
 
+    /**
+     * True if queries can run simultaneously on read-only connections.
+     *
+     * <p>Only in WAL mode and outside any transaction, where readers do not block the writer
+     * and see the last committed data.
+     */
+    synchronized boolean canReadConcurrently() {
+        return readConnectionCount > 0 && walEnabled && transactionDepth == 0 && currentTransactionId == null;
+    }
+
+    /**
+     * Get an idle read-only connection, opening one if needed.
+     *
+     * <p>Returns the main connection when all read connections are in use, which is fine in
+     * WAL mode, the query then waits for the running write if any.
+     */
+    private SQLiteDatabase acquireReadConnection() {
+        synchronized (readConnections) {
+            SQLiteDatabase readConnection = readConnections.poll();
+            if (readConnection != null) {
+                return readConnection;
+            }
+            if (openedReadConnections.size() < readConnectionCount) {
+                try {
+                    readConnection = openReadOnlyDatabase();
+                    openedReadConnections.add(readConnection);
+                    if (LogLevel.hasVerboseLevel(logLevel)) {
+                        Log.d(TAG, getThreadLogPrefix() + "opened read connection " + openedReadConnections.size());
+                    }
+                    return readConnection;
+                } catch (Exception e) {
+                    Log.e(TAG, getThreadLogPrefix() + "open read connection error: " + e);
+                }
+            }
+        }
+        return sqliteDatabase;
+    }
+
+    private void releaseReadConnection(SQLiteDatabase readConnection) {
+        if (readConnection != sqliteDatabase) {
+            synchronized (readConnections) {
+                // Might have been closed
+                if (openedReadConnections.contains(readConnection)) {
+                    readConnections.add(readConnection);
+                }
+            }
+        }
+    }
+
     public boolean enableWriteAheadLogging() {
         try {
             return sqliteDatabase.enableWriteAheadLogging();
@@ -209,36 +420,236 @@ class Database {
         return "[" + getThreadLogTag() + "] ";
     }
 
-    private Map<String, Object> cursorToResults(Cursor cursor, @Nullable Integer cursorPageSize) {
+    /**
+     * @param maxSize when paging, stop once the page reaches this estimated size in bytes, 0 for no limit.
+     *                The effective page size (row count) is then reported in the results.
+     * @param withColumns false to omit the column names, already sent with the first cursor page
+     */
+    private Map<String, Object> cursorToResults(Cursor cursor, @Nullable Integer cursorPageSize, @Nullable String resultFormat, long maxSize, boolean withColumns) {
+        if (RESULT_FORMAT_COLUMNAR.equals(resultFormat)) {
+            return cursorToColumnarResults(cursor, cursorPageSize, maxSize, withColumns, false);
+        } else if (RESULT_FORMAT_COLUMNAR_DICTIONARY.equals(resultFormat)) {
+            return cursorToColumnarResults(cursor, cursorPageSize, maxSize, withColumns, true);
+        } else if (RESULT_FORMAT_PACKED.equals(resultFormat)) {
+            return cursorToPackedResults(cursor, cursorPageSize, maxSize);
+        } else if (RESULT_FORMAT_JSON.equals(resultFormat)) {
+            return cursorToJsonResults(cursor, cursorPageSize, maxSize);
+        }
         Map<String, Object> results = null;
         List<List<Object>> rows = null;
         int columnCount = 0;
+        long size = 0;
         while (cursor.moveToNext()) {
 
             if (results == null) {
                 rows = new ArrayList<>();
                 results = new HashMap<>();
                 columnCount = cursor.getColumnCount();
-                results.put(PARAM_COLUMNS, Arrays.asList(cursor.getColumnNames()));
+                if (withColumns) {
+                    results.put(PARAM_COLUMNS, Arrays.asList(cursor.getColumnNames()));
+                }
                 results.put(PARAM_ROWS, rows);
             }
-            rows.add(cursorRowToList(cursor, columnCount));
+            List<Object> row = cursorRowToList(cursor, columnCount);
+            rows.add(row);
 
             // Paging support
             if (cursorPageSize != null) {
                 if (rows.size() >= cursorPageSize) {
                     break;
                 }
+                if (maxSize > 0) {
+                    for (Object value : row) {
+                        size += Utils.valueSize(value);
+                    }
+                    if (size >= maxSize) {
+                        break;
+                    }
+                }
             }
         }
         // Handle empty
         if (results == null) {
             results = new HashMap<>();
+        } else if (maxSize > 0) {
+            results.put(PARAM_CURSOR_PAGE_SIZE, rows.size());
+        }
+
+        return results;
+    }
+
+    private Map<String, Object> cursorToColumnarResults(Cursor cursor, @Nullable Integer cursorPageSize, long maxSize, boolean withColumns, boolean stringDictionary) {
+        ColumnarResults results = null;
+        while (cursor.moveToNext()) {
+            if (results == null) {
+                results = new ColumnarResults(cursor.getColumnNames(), cursorPageSize != null ? cursorPageSize : cursor.getCount(), stringDictionary);
+            }
+            results.addRow(cursor);
+
+            // Paging support
+            if (cursorPageSize != null) {
+                if (results.getRowCount() >= cursorPageSize || (maxSize > 0 && results.getSize() >= maxSize)) {
+                    break;
+                }
+            }
+        }
+        // Handle empty
+        if (results == null) {
+            return new HashMap<>();
         }
+        Map<String, Object> map = results.toMap(withColumns);
+        if (maxSize > 0) {
+            map.put(PARAM_CURSOR_PAGE_SIZE, results.getRowCount());
+        }
+        return map;
+    }
 
+    private Map<String, Object> cursorToPackedResults(Cursor cursor, @Nullable Integer cursorPageSize, long maxSize) {
+        // Columns are sent even without rows, and in every page as part of the format
+        PackedRows rows = new PackedRows(cursor.getColumnNames());
+        while (cursor.moveToNext()) {
+            rows.addRow(cursor);
+
+            // Paging support
+            if (cursorPageSize != null) {
+                if (rows.getRowCount() >= cursorPageSize || (maxSize > 0 && rows.getSize() >= maxSize)) {
+                    break;
+                }
+            }
+        }
+        Map<String, Object> results = new HashMap<>();
+        results.put(PARAM_PACKED_ROWS, rows.toByteArray());
+        if (maxSize > 0) {
+            results.put(PARAM_CURSOR_PAGE_SIZE, rows.getRowCount());
+        }
         return results;
     }
 
+    private Map<String, Object> cursorToJsonResults(Cursor cursor, @Nullable Integer cursorPageSize, long maxSize) {
+        // Always a JSON array, even without rows
+        JsonRows rows = new JsonRows(cursor.getColumnNames());
+        while (cursor.moveToNext()) {
+            rows.addRow(cursor);
+
+            // Paging support
+            if (cursorPageSize != null) {
+                if (rows.getRowCount() >= cursorPageSize || (maxSize > 0 && rows.getSize() >= maxSize)) {
+                    break;
+                }
+            }
+        }
+        Map<String, Object> results = new HashMap<>();
+        results.put(PARAM_JSON_ROWS, rows.toByteArray());
+        if (maxSize > 0) {
+            results.put(PARAM_CURSOR_PAGE_SIZE, rows.getRowCount());
+        }
+        return results;
+    }
+
+    private static File getResultFilesDir(Context context) {
+        return new File(context.getCacheDir(), RESULT_FILES_DIR_NAME);
+    }
+
+    /**
+     * Delete result files left by a process killed before they were deleted. Must be called
+     * before any database is opened.
+     */
+    static void purgeResultFiles(Context context) {
+        if (resultFilesPurged) {
+            return;
+        }
+        resultFilesPurged = true;
+        File[] files = getResultFilesDir(context).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete() && file.exists()) {
+                    Log.e(TAG, "cannot delete " + file);
+                }
+            }
+        }
+    }
+
+    // Rows are flushed by chunks so that the Java heap does not grow with the result size
+    private Map<String, Object> cursorToResultFile(Cursor cursor, @Nullable String resultFormat) throws IOException {
+        File dir = getResultFilesDir(context);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        boolean json = RESULT_FORMAT_JSON.equals(resultFormat);
+        File file = File.createTempFile("query", json ? ".json" : ".bin", dir);
+        synchronized (resultFiles) {
+            resultFiles.add(file.getPath());
+        }
+        boolean written = false;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            int rowCount;
+            if (json) {
+                JsonRows rows = new JsonRows(cursor.getColumnNames(), RESULT_FILE_CHUNK_SIZE);
+                while (cursor.moveToNext()) {
+                    rows.addRow(cursor);
+                    if (rows.getSize() >= RESULT_FILE_CHUNK_SIZE) {
+                        rows.flushTo(channel);
+                    }
+                }
+                rows.finishTo(channel);
+                rowCount = rows.getRowCount();
+            } else {
+                PackedRows rows = new PackedRows(cursor.getColumnNames(), RESULT_FILE_CHUNK_SIZE);
+                while (cursor.moveToNext()) {
+                    rows.addRow(cursor);
+                    if (rows.getSize() >= RESULT_FILE_CHUNK_SIZE) {
+                        rows.flushTo(channel);
+                    }
+                }
+                rows.finishTo(channel);
+                rowCount = rows.getRowCount();
+            }
+            Map<String, Object> results = new HashMap<>();
+            results.put(PARAM_RESULT_FILE_PATH, file.getPath());
+            results.put(PARAM_RESULT_FILE_LENGTH, channel.size());
+            results.put(PARAM_ROW_COUNT, rowCount);
+            if (LogLevel.hasVerboseLevel(logLevel)) {
+                Log.d(TAG, getThreadLogPrefix() + rowCount + " row(s) written to " + file + ", " + channel.size() + " bytes");
+            }
+            written = true;
+            return results;
+        } finally {
+            if (!written) {
+                deleteResultFile(file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Delete a file written by a query once acknowledged.
+     */
+    public void deleteResultFile(final @NonNull Operation operation) {
+        String path = operation.getArgument(PARAM_RESULT_FILE_PATH);
+        if (LogLevel.hasVerboseLevel(logLevel)) {
+            Log.d(TAG, getThreadLogPrefix() + "delete " + path);
+        }
+        deleteResultFile(path);
+        operation.success(null);
+    }
+
+    // Only files written for this database can be deleted
+    private void deleteResultFile(@Nullable String path) {
+        boolean known;
+        synchronized (resultFiles) {
+            known = resultFiles.remove(path);
+        }
+        if (known) {
+            deleteFile(new File(path));
+        }
+    }
+
+    private void deleteFile(File file) {
+        if (!file.delete() && file.exists()) {
+            Log.e(TAG, getThreadLogPrefix() + "cannot delete " + file);
+        }
+    }
+
     private void runQueuedOperations() {
         while (!noTransactionOperationQueue.isEmpty()) {
             if (currentTransactionId != null) {
@@ -270,12 +681,41 @@ class Database {
     }
 
     public void query(final @NonNull Operation operation) {
-        wrapSqlOperationHandler(operation, () -> doQuery(operation));
+        wrapSqlOperationHandler(operation, () -> doQuery(operation, canReadConcurrently()));
     }
 
-    private boolean doQuery(final @NonNull Operation operation) {
+    /**
+     * @param useReadConnection true to run on a read-only connection
+     */
+    private boolean doQuery(final @NonNull Operation operation, boolean useReadConnection) {
         // Non null means dealing with saved cursor.
         Integer cursorPageSize = operation.getArgument(PARAM_CURSOR_PAGE_SIZE);
+        Integer cursorPageMaxSize = operation.getArgument(PARAM_CURSOR_PAGE_MAX_SIZE);
+        if (cursorPageMaxSize != null && cursorPageSize == null) {
+            // Pages only limited by their size in bytes
+            cursorPageSize = Integer.MAX_VALUE;
+        }
+        int pageMaxSize = cursorPageMaxSize != null ? cursorPageMaxSize : 0;
+        // Query without cursor read as a single page, failing or using a cursor if larger
+        boolean guarded = cursorPageSize == null && (maxResultRows > 0 || maxResultSize > 0);
+        if (guarded) {
+            cursorPageSize = maxResultRows > 0 ? maxResultRows : Integer.MAX_VALUE;
+            pageMaxSize = maxResultSize;
+        }
+        // Written at once, whatever its size
+        boolean resultFile = Boolean.TRUE.equals(operation.getArgument(PARAM_RESULT_FILE));
+        if (resultFile) {
+            cursorPageSize = null;
+            guarded = false;
+        }
+        // Next pages sent through the query stream
+        boolean stream = Boolean.TRUE.equals(operation.getArgument(PARAM_STREAM));
+        String resultFormat = operation.getArgument(PARAM_RESULT_FORMAT);
+        if (resultFile && resultFormat != null && !RESULT_FORMAT_PACKED.equals(resultFormat) && !RESULT_FORMAT_JSON.equals(resultFormat)) {
+            operation.error(ERROR_BAD_PARAM, "Result format '" + resultFormat + "' not supported for result file", null);
+            return false;
+        }
+        boolean columnsOnce = Boolean.TRUE.equals(operation.getArgument(PARAM_COLUMNS_ONCE));
         boolean cursorHasMoreData = false;
 
         final SqlCommand command = operation.getSqlCommand();
@@ -287,28 +727,71 @@ class Database {
             Log.d(TAG, getThreadLogPrefix() + command);
         }
         Cursor cursor = null;
+        Cursor limitedCursor = null;
+        SQLiteDatabase db = useReadConnection ? acquireReadConnection() : getReadableDatabase();
+        // Reused window, if any, released once the cursor is closed
+        CursorWindow window = cursorWindowPool != null ? cursorWindowPool.acquire() : null;
 
         try {
-            cursor = getReadableDatabase().rawQueryWithFactory(
-                    (sqLiteDatabase, sqLiteCursorDriver, editTable, sqLiteQuery) -> {
-                        command.bindTo(sqLiteQuery);
-                        return new SQLiteCursor(sqLiteCursorDriver, editTable, sqLiteQuery);
-                    }, command.getSql(), EMPTY_STRING_ARRAY, null);
+            if (stream && (queryStreamHandler == null || !queryStreamHandler.isListening())) {
+                // Pages would be lost
+                throw new IllegalStateException("No query stream listener");
+            }
+            // Not run until its first row is read
+            cursor = rawQuery(db, command, command.getSql(), window);
+            // The first page is read from a query limited to one more row, so that it does not count
+            // all the rows
+            if (cursorPageSize != null && cursorPageSize < Integer.MAX_VALUE && !resultFile
+                    && DatabaseUtils.getSqlStatementType(command.getSql()) == DatabaseUtils.STATEMENT_SELECT) {
+                limitedCursor = rawLimitedQuery(db, command, cursorPageSize + 1, window, cursor.getColumnNames());
+            }
+            Cursor firstPageCursor = limitedCursor != null ? limitedCursor : cursor;
 
-            Map<String, Object> results = cursorToResults(cursor, cursorPageSize);
+            Map<String, Object> results = resultFile ? cursorToResultFile(cursor, resultFormat)
+                    : cursorToResults(firstPageCursor, cursorPageSize, resultFormat, pageMaxSize, true);
             if (cursorPageSize != null) {
                 // We'll have potentially more data to fetch
-                cursorHasMoreData = !(cursor.isLast() || cursor.isAfterLast());
+                cursorHasMoreData = !(firstPageCursor.isLast() || firstPageCursor.isAfterLast());
 
             }
+            if (guarded) {
+                if (cursorHasMoreData && !Boolean.TRUE.equals(operation.getArgument(PARAM_CURSOR_ON_OVERFLOW))) {
+                    operation.error(ERROR_RESULT_TOO_LARGE, "Query result over max rows " + maxResultRows + " or max size " + maxResultSize, null);
+                    return false;
+                }
+                if (!cursorHasMoreData) {
+                    results.remove(PARAM_CURSOR_PAGE_SIZE);
+                }
+            }
 
             if (cursorHasMoreData) {
-                int cursorId = ++lastCursorId;
-                results.put(PARAM_CURSOR_ID, cursorId);
-                sqfliteCursor = new SqfliteCursor(cursorId, cursorPageSize, cursor);
-                cursors.put(cursorId, sqfliteCursor);
+                synchronized (cursors) {
+                    int cursorId = ++lastCursorId;
+                    results.put(PARAM_CURSOR_ID, cursorId);
+                    sqfliteCursor = new SqfliteCursor(cursorId, cursorPageSize, pageMaxSize, resultFormat, columnsOnce, cursor);
+                    sqfliteCursor.window = window;
+                    if (useReadConnection) {
+                        sqfliteCursor.readConnection = db;
+                    }
+                    if (limitedCursor != null) {
+                        sqfliteCursor.skippedRowCount = limitedCursor.getPosition() + 1;
+                    }
+                    sqfliteCursor.lastAccessTime = SystemClock.uptimeMillis();
+                    cursors.put(cursorId, sqfliteCursor);
+                    openedCursorCount++;
+                }
+                evictCursors();
+                scheduleCursorExpiry();
             }
             operation.success(results);
+            if (sqfliteCursor != null) {
+                if (stream) {
+                    Integer credit = operation.getArgument(PARAM_CREDIT);
+                    streamCursor(sqfliteCursor, credit != null ? credit : 1);
+                } else {
+                    prefetchCursorNext(sqfliteCursor);
+                }
+            }
 
             return true;
 
@@ -320,13 +803,68 @@ class Database {
             }
             return false;
         } finally {
+            if (limitedCursor != null) {
+                limitedCursor.close();
+            }
             // Close the cursor for non-paged query
             if (sqfliteCursor == null) {
                 if (cursor != null) {
                     cursor.close();
                 }
+                if (window != null) {
+                    releaseCursorWindow(window);
+                }
+            }
+            // A paged cursor keeps its connection until closed
+            if (useReadConnection && sqfliteCursor == null) {
+                releaseReadConnection(db);
+            }
+        }
+    }
+
+    /**
+     * @param window shared window, if any, a reference is acquired for the cursor
+     */
+    private Cursor rawQuery(SQLiteDatabase db, SqlCommand command, String sql, @Nullable CursorWindow window) {
+        return db.rawQueryWithFactory(
+                (sqLiteDatabase, sqLiteCursorDriver, editTable, sqLiteQuery) -> {
+                    command.bindTo(sqLiteQuery);
+                    SQLiteCursor sqliteCursor = new SQLiteCursor(sqLiteCursorDriver, editTable, sqLiteQuery);
+                    if (window != null) {
+                        // Released when the cursor closes its window
+                        window.acquireReference();
+                        sqliteCursor.setWindow(window);
+                    }
+                    return sqliteCursor;
+                }, sql, EMPTY_STRING_ARRAY, null);
+    }
+
+    /**
+     * The command limited to its first rows, with the column names of the full query as a
+     * sub-query renames duplicated columns. Null if the command cannot be wrapped.
+     */
+    @Nullable
+    private Cursor rawLimitedQuery(SQLiteDatabase db, SqlCommand command, int limit, @Nullable CursorWindow window, String[] columnNames) {
+        Cursor cursor;
+        try {
+            cursor = rawQuery(db, command, Utils.limitSql(command.getSql(), limit), window);
+        } catch (SQLiteException e) {
+            if (LogLevel.hasVerboseLevel(logLevel)) {
+                Log.d(TAG, getThreadLogPrefix() + "cannot limit query: " + e.getMessage());
             }
+            return null;
         }
+        return new CursorWrapper(cursor) {
+            @Override
+            public String[] getColumnNames() {
+                return columnNames;
+            }
+
+            @Override
+            public String getColumnName(int columnIndex) {
+                return columnNames[columnIndex];
+            }
+        };
     }
 
     public void queryCursorNext(final @NonNull Operation operation) {
@@ -345,24 +883,45 @@ class Database {
             operation.success(null);
             return true;
         }
-        SqfliteCursor sqfliteCursor = cursors.get(cursorId);
+        SqfliteCursor sqfliteCursor;
+        synchronized (cursors) {
+            sqfliteCursor = cursors.get(cursorId);
+            if (sqfliteCursor != null) {
+                sqfliteCursor.lastAccessTime = SystemClock.uptimeMillis();
+            }
+        }
         boolean cursorHasMoreData = false;
         try {
             if (sqfliteCursor == null) {
                 throw new IllegalStateException("Cursor " + cursorId + " not found");
             }
-            Cursor cursor = sqfliteCursor.cursor;
+            Map<String, Object> results;
+            synchronized (sqfliteCursor) {
+                if (sqfliteCursor.prefetchError != null) {
+                    throw sqfliteCursor.prefetchError;
+                }
+                results = sqfliteCursor.prefetchedResults;
+                if (results != null) {
+                    sqfliteCursor.prefetchedResults = null;
+                    cursorHasMoreData = sqfliteCursor.prefetchedHasMoreData;
+                } else {
+                    Cursor cursor = sqfliteCursor.getCursor();
 
-            Map<String, Object> results = cursorToResults(cursor, sqfliteCursor.pageSize);
+                    results = cursorToResults(cursor, sqfliteCursor.pageSize, sqfliteCursor.resultFormat, sqfliteCursor.pageMaxSize, !sqfliteCursor.columnsOnce);
 
-            // We'll have potentially more data to fetch
-            cursorHasMoreData = !(cursor.isLast() || cursor.isAfterLast());
+                    // We'll have potentially more data to fetch
+                    cursorHasMoreData = !(cursor.isLast() || cursor.isAfterLast());
+                }
+            }
 
             if (cursorHasMoreData) {
                 // Keep the cursor Id in the response to specify that we have more data
                 results.put(PARAM_CURSOR_ID, cursorId);
             }
             operation.success(results);
+            if (cursorHasMoreData) {
+                prefetchCursorNext(sqfliteCursor);
+            }
 
             return true;
 
@@ -384,26 +943,391 @@ class Database {
         }
     }
 
+    public void queryStreamCredit(final @NonNull Operation operation) {
+        wrapSqlOperationHandler(operation, () -> doQueryStreamCredit(operation));
+    }
+
+    private void doQueryStreamCredit(final @NonNull Operation operation) {
+        int cursorId = operation.getArgument(PARAM_CURSOR_ID);
+        Integer credit = operation.getArgument(PARAM_CREDIT);
+        SqfliteCursor sqfliteCursor;
+        synchronized (cursors) {
+            sqfliteCursor = cursors.get(cursorId);
+            if (sqfliteCursor != null) {
+                sqfliteCursor.lastAccessTime = SystemClock.uptimeMillis();
+            }
+        }
+        // The cursor might have been closed after its last page
+        operation.success(null);
+        if (sqfliteCursor != null) {
+            streamCursor(sqfliteCursor, credit != null ? credit : 1);
+        }
+    }
+
+    // Send the next pages through the query stream, as long as Dart has credit
+    private void streamCursor(@NonNull SqfliteCursor sqfliteCursor, int credit) {
+        QueryStreamHandler streamHandler = queryStreamHandler;
+        synchronized (sqfliteCursor) {
+            sqfliteCursor.streaming = true;
+            sqfliteCursor.streamCredit += credit;
+        }
+        int cursorId = sqfliteCursor.cursorId;
+        while (true) {
+            Map<String, Object> event;
+            boolean cursorHasMoreData;
+            synchronized (sqfliteCursor) {
+                // Credit is kept until the next queryStreamCredit call if Dart stopped listening
+                if (sqfliteCursor.closed || sqfliteCursor.streamCredit <= 0 || streamHandler == null || !streamHandler.isListening()) {
+                    return;
+                }
+                sqfliteCursor.streamCredit--;
+                try {
+                    Cursor cursor = sqfliteCursor.getCursor();
+                    event = cursorToResults(cursor, sqfliteCursor.pageSize, sqfliteCursor.resultFormat, sqfliteCursor.pageMaxSize, !sqfliteCursor.columnsOnce);
+                    cursorHasMoreData = !(cursor.isLast() || cursor.isAfterLast());
+                } catch (Exception exception) {
+                    event = streamErrorEvent(exception.getMessage());
+                    cursorHasMoreData = false;
+                }
+                if (!cursorHasMoreData) {
+                    // No other event once the last one is sent
+                    sqfliteCursor.closed = true;
+                }
+            }
+            event.put(PARAM_CURSOR_ID, cursorId);
+            if (!cursorHasMoreData) {
+                event.put(PARAM_DONE, true);
+            }
+            if (LogLevel.hasVerboseLevel(logLevel)) {
+                Log.d(TAG, getThreadLogPrefix() + "cursor " + cursorId + " stream" + (cursorHasMoreData ? "" : " done"));
+            }
+            streamHandler.send(event);
+            if (!cursorHasMoreData) {
+                closeCursor(sqfliteCursor);
+                return;
+            }
+        }
+    }
+
+    private static Map<String, Object> streamErrorEvent(@Nullable String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put(PARAM_ERROR_CODE, Constant.SQLITE_ERROR);
+        error.put(PARAM_ERROR_MESSAGE, message);
+        Map<String, Object> event = new HashMap<>();
+        event.put(PARAM_ERROR, error);
+        return event;
+    }
+
+    // Read the next page in the background, answered by the next queryCursorNext
+    private void prefetchCursorNext(@NonNull SqfliteCursor sqfliteCursor) {
+        if (cursorPrefetchSize > 0) {
+            databaseWorkerPool.postRead(this, PRIORITY_BACKGROUND, () -> doPrefetchCursorNext(sqfliteCursor));
+        }
+    }
+
+    private void doPrefetchCursorNext(@NonNull SqfliteCursor sqfliteCursor) {
+        synchronized (sqfliteCursor) {
+            // Cancelled, already read ahead, or pages too large
+            if (sqfliteCursor.closed || sqfliteCursor.prefetchDisabled || sqfliteCursor.prefetchedResults != null || sqfliteCursor.prefetchError != null) {
+                return;
+            }
+            // Reading is delayed within another transaction
+            if (currentTransactionId != null) {
+                return;
+            }
+            if (LogLevel.hasVerboseLevel(logLevel)) {
+                Log.d(TAG, getThreadLogPrefix() + "cursor " + sqfliteCursor.cursorId + " prefetch");
+            }
+            try {
+                Cursor cursor = sqfliteCursor.getCursor();
+                int position = cursor.getPosition();
+                // Same page as queryCursorNext would read
+                Map<String, Object> results = cursorToResults(cursor, sqfliteCursor.pageSize, sqfliteCursor.resultFormat, sqfliteCursor.pageMaxSize, !sqfliteCursor.columnsOnce);
+                if (Utils.resultsSize(results) > cursorPrefetchSize) {
+                    // Too large to be kept, read again by the next queryCursorNext. Next pages are
+                    // likely as large, so they are not read twice
+                    cursor.moveToPosition(position);
+                    sqfliteCursor.prefetchDisabled = true;
+                    return;
+                }
+                sqfliteCursor.prefetchedHasMoreData = !(cursor.isLast() || cursor.isAfterLast());
+                sqfliteCursor.prefetchedResults = results;
+            } catch (Exception exception) {
+                sqfliteCursor.prefetchError = exception;
+            }
+        }
+    }
+
     private void closeCursor(@NonNull SqfliteCursor sqfliteCursor) {
+        closeCursor(sqfliteCursor, null);
+    }
+
+    /**
+     * @param reason set when Dart did not ask for it, a streamed cursor then ends with an error
+     *               event as Dart would wait for its next page
+     */
+    private void closeCursor(@NonNull SqfliteCursor sqfliteCursor, @Nullable String reason) {
         try {
             int cursorId = sqfliteCursor.cursorId;
             if (LogLevel.hasVerboseLevel(logLevel)) {
                 Log.d(TAG, getThreadLogPrefix() + "closing cursor " + cursorId);
             }
-            cursors.remove(cursorId);
-            sqfliteCursor.cursor.close();
+            synchronized (cursors) {
+                cursors.remove(cursorId);
+            }
+            QueryStreamHandler streamHandler = queryStreamHandler;
+            if (sqfliteCursor.markClosed() && reason != null && streamHandler != null) {
+                Map<String, Object> event = streamErrorEvent("Cursor " + cursorId + " " + reason);
+                event.put(PARAM_CURSOR_ID, cursorId);
+                event.put(PARAM_DONE, true);
+                streamHandler.send(event);
+            }
+            CursorWindow window;
+            SQLiteDatabase readConnection;
+            synchronized (sqfliteCursor) {
+                sqfliteCursor.cursor.close();
+                window = sqfliteCursor.window;
+                sqfliteCursor.window = null;
+                readConnection = sqfliteCursor.readConnection;
+                sqfliteCursor.readConnection = null;
+            }
+            if (window != null) {
+                releaseCursorWindow(window);
+            }
+            if (readConnection != null) {
+                releaseReadConnection(readConnection);
+            }
         } catch (Exception ignore) {
         }
     }
 
+    // Once its cursor is closed
+    private void releaseCursorWindow(@NonNull CursorWindow window) {
+        if (cursorWindowPool != null) {
+            cursorWindowPool.release(window);
+        } else {
+            window.close();
+        }
+    }
+
+    // Close the least recently used cursors above maxCursorCount
+    private void evictCursors() {
+        if (maxCursorCount <= 0) {
+            return;
+        }
+        List<SqfliteCursor> evictedCursors = new ArrayList<>();
+        synchronized (cursors) {
+            int count = cursors.size();
+            for (SqfliteCursor sqfliteCursor : cursors.values()) {
+                if (count-- <= maxCursorCount) {
+                    break;
+                }
+                evictedCursors.add(sqfliteCursor);
+            }
+            evictedCursorCount += evictedCursors.size();
+        }
+        for (SqfliteCursor sqfliteCursor : evictedCursors) {
+            if (LogLevel.hasVerboseLevel(logLevel)) {
+                Log.d(TAG, getThreadLogPrefix() + "cursor " + sqfliteCursor.cursorId + " evicted");
+            }
+            closeCursor(sqfliteCursor, "evicted");
+        }
+    }
+
+    // Close the cursors unused for cursorIdleTimeout, streamed cursors wait for Dart credit
+    private void closeExpiredCursors() {
+        List<SqfliteCursor> expiredCursors = new ArrayList<>();
+        long now = SystemClock.uptimeMillis();
+        synchronized (cursors) {
+            cursorExpiryScheduled = false;
+            for (SqfliteCursor sqfliteCursor : cursors.values()) {
+                if (!sqfliteCursor.streaming && sqfliteCursor.lastAccessTime + cursorIdleTimeout <= now) {
+                    expiredCursors.add(sqfliteCursor);
+                }
+            }
+            expiredCursorCount += expiredCursors.size();
+        }
+        for (SqfliteCursor sqfliteCursor : expiredCursors) {
+            if (LogLevel.hasVerboseLevel(logLevel)) {
+                Log.d(TAG, getThreadLogPrefix() + "cursor " + sqfliteCursor.cursorId + " expired");
+            }
+            closeCursor(sqfliteCursor);
+        }
+        scheduleCursorExpiry();
+    }
+
+    // Check again when the least recently used cursor expires
+    private void scheduleCursorExpiry() {
+        if (cursorIdleTimeout <= 0) {
+            return;
+        }
+        synchronized (cursors) {
+            if (cursorExpiryScheduled || cursors.isEmpty()) {
+                return;
+            }
+            long lastAccessTime = Long.MAX_VALUE;
+            for (SqfliteCursor sqfliteCursor : cursors.values()) {
+                if (!sqfliteCursor.streaming) {
+                    lastAccessTime = Math.min(lastAccessTime, sqfliteCursor.lastAccessTime);
+                }
+            }
+            if (lastAccessTime == Long.MAX_VALUE) {
+                // Only streamed cursors
+                return;
+            }
+            long delay = Math.max(0, lastAccessTime + cursorIdleTimeout - SystemClock.uptimeMillis());
+            if (cursorExpiryHandler == null) {
+                cursorExpiryHandler = new Handler(Looper.getMainLooper());
+            }
+            cursorExpiryScheduled = true;
+            cursorExpiryHandler.postDelayed(checkCursorExpiry, delay);
+        }
+    }
+
     // No exception thrown here
     private void closeCursor(int cursorId) {
-        SqfliteCursor sqfliteCursor = cursors.get(cursorId);
+        SqfliteCursor sqfliteCursor;
+        synchronized (cursors) {
+            sqfliteCursor = cursors.get(cursorId);
+        }
         if (sqfliteCursor != null) {
             closeCursor(sqfliteCursor);
         }
     }
 
+    public void prepare(final @NonNull Operation operation) {
+        wrapSqlOperationHandler(operation, () -> doPrepare(operation));
+    }
+
+    private boolean doPrepare(final @NonNull Operation operation) {
+        String sql = operation.getArgument(PARAM_SQL);
+        String method = operation.getArgument(PARAM_METHOD);
+        if (method == null) {
+            method = METHOD_EXECUTE;
+        }
+        if (LogLevel.hasSqlLevel(logLevel)) {
+            Log.d(TAG, getThreadLogPrefix() + "prepare " + method + " " + sql);
+        }
+        try {
+            SQLiteStatement statement = getWritableDatabase().compileStatement(sql);
+            if (METHOD_QUERY.equals(method)) {
+                // Only validated here, compiled again on the connection running the query
+                statement.close();
+                statement = null;
+            }
+            int statementId;
+            synchronized (preparedStatements) {
+                statementId = ++lastPreparedStatementId;
+                preparedStatements.put(statementId, new SqflitePreparedStatement(statementId, method, sql, statement));
+            }
+            operation.success(statementId);
+            return true;
+        } catch (Exception exception) {
+            handleException(exception, operation);
+            return false;
+        }
+    }
+
+    @NonNull
+    private SqflitePreparedStatement getPreparedStatement(int statementId) {
+        SqflitePreparedStatement preparedStatement;
+        synchronized (preparedStatements) {
+            preparedStatement = preparedStatements.get(statementId);
+        }
+        if (preparedStatement == null) {
+            throw new IllegalStateException("Statement " + statementId + " not found");
+        }
+        return preparedStatement;
+    }
+
+    public void executePrepared(final @NonNull Operation operation) {
+        wrapSqlOperationHandler(operation, () -> doExecutePrepared(operation));
+    }
+
+    private boolean doExecutePrepared(final @NonNull Operation operation) {
+        Operation preparedOperation = operation;
+        try {
+            int statementId = operation.getArgument(PARAM_STATEMENT_ID);
+            SqflitePreparedStatement preparedStatement = getPreparedStatement(statementId);
+            preparedOperation = new PreparedOperation(operation, preparedStatement.sql);
+            SQLiteStatement statement = preparedStatement.statement;
+            if (statement == null) {
+                throw new IllegalStateException("Statement " + statementId + " is a query");
+            }
+            SqlCommand command = preparedOperation.getSqlCommand();
+            if (LogLevel.hasSqlLevel(logLevel)) {
+                Log.d(TAG, getThreadLogPrefix() + command);
+            }
+            Object result;
+            try {
+                command.bindTo(statement);
+                switch (preparedStatement.method) {
+                    case METHOD_INSERT:
+                        result = statement.executeInsert();
+                        break;
+                    case METHOD_UPDATE:
+                        result = statement.executeUpdateDelete();
+                        break;
+                    default:
+                        statement.execute();
+                        result = null;
+                        break;
+                }
+            } finally {
+                statement.clearBindings();
+            }
+            if (DatabaseUtils.getSqlStatementType(preparedStatement.sql) == DatabaseUtils.STATEMENT_DDL) {
+                clearStatementCache();
+            }
+            if (operation.getNoResult()) {
+                operation.success(null);
+            } else {
+                operation.success(result);
+            }
+            return true;
+        } catch (Exception exception) {
+            handleException(exception, preparedOperation);
+            return false;
+        }
+    }
+
+    public void queryPrepared(final @NonNull Operation operation) {
+        wrapSqlOperationHandler(operation, () -> {
+            try {
+                int statementId = operation.getArgument(PARAM_STATEMENT_ID);
+                SqflitePreparedStatement preparedStatement = getPreparedStatement(statementId);
+                if (!METHOD_QUERY.equals(preparedStatement.method)) {
+                    // Would write, possibly on a read connection
+                    operation.error(ERROR_BAD_PARAM, "Statement " + statementId + " is not a query", null);
+                    return;
+                }
+                doQuery(new PreparedOperation(operation, preparedStatement.sql), canReadConcurrently());
+            } catch (Exception exception) {
+                handleException(exception, operation);
+            }
+        });
+    }
+
+    public void finalizePrepared(final @NonNull Operation operation) {
+        wrapSqlOperationHandler(operation, () -> {
+            int statementId = operation.getArgument(PARAM_STATEMENT_ID);
+            if (LogLevel.hasVerboseLevel(logLevel)) {
+                Log.d(TAG, getThreadLogPrefix() + "finalize statement " + statementId);
+            }
+            SqflitePreparedStatement preparedStatement;
+            synchronized (preparedStatements) {
+                preparedStatement = preparedStatements.remove(statementId);
+            }
+            if (preparedStatement != null) {
+                try {
+                    preparedStatement.close();
+                } catch (Exception ignore) {
+                }
+            }
+            operation.success(null);
+        });
+    }
+
     void handleException(Exception exception, Operation operation) {
         if (exception instanceof SQLiteCantOpenDatabaseException) {
             operation.error(Constant.SQLITE_ERROR, Constant.ERROR_OPEN_FAILED + " " + path, null);
@@ -417,13 +1341,35 @@ class Database {
 
     // Called during batch, warning duplicated code!
     private boolean executeOrError(Operation operation) {
+        return executeOrError(operation, null);
+    }
+
+    /**
+     * @param group statement shared with the previous batch operations, if any
+     */
+    private boolean executeOrError(Operation operation, @Nullable StatementGroup group) {
         SqlCommand command = operation.getSqlCommand();
         if (LogLevel.hasSqlLevel(logLevel)) {
             Log.d(TAG, getThreadLogPrefix() + command);
         }
         Boolean operationInTransaction = operation.getInTransactionChange();
         try {
-            getWritableDatabase().execSQL(command.getSql(), command.getSqlArguments());
+            String sql = command.getSql();
+            int statementType = DatabaseUtils.getSqlStatementType(sql);
+            if ((statementCache != null || group != null) && statementType == DatabaseUtils.STATEMENT_UPDATE) {
+                SQLiteStatement statement = acquireStatement(sql, group);
+                try {
+                    command.bindTo(statement);
+                    statement.execute();
+                } finally {
+                    releaseStatement(sql, statement, group);
+                }
+            } else {
+                getWritableDatabase().execSQL(sql, command.getSqlArguments());
+                if (statementType == DatabaseUtils.STATEMENT_DDL) {
+                    clearStatementCache();
+                }
+            }
             enterOrLeaveInTransaction(operationInTransaction);
             return true;
         } catch (Exception exception) {
@@ -432,25 +1378,102 @@ class Database {
         }
     }
 
-    private void bindArgs(SQLiteStatement stmt, Object[] args) {
-        for (int i = 0; i < args.length; i++) {
-            Object arg = args[i];
-            int index = i + 1; // SQLite parameters are 1-based
+    // Statements handled by the cache, insert/update/delete/replace
+    private boolean isCacheableStatement(String sql) {
+        return statementCache != null && DatabaseUtils.getSqlStatementType(sql) == DatabaseUtils.STATEMENT_UPDATE;
+    }
 
-            if (arg == null) {
-                stmt.bindNull(index);
-            } else if (arg instanceof byte[]) {
-                stmt.bindBlob(index, (byte[]) arg);
-            } else if (arg instanceof Double || arg instanceof Float) {
-                stmt.bindDouble(index, ((Number) arg).doubleValue());
-            } else if (arg instanceof Number) {
-                stmt.bindLong(index, ((Number) arg).longValue());
-            } else if (arg instanceof Boolean) {
-                stmt.bindLong(index, ((Boolean) arg) ? 1 : 0);
-            } else {
-                stmt.bindString(index, arg.toString());
+    /**
+     * Compile a statement on the writer, or get it from the cache.
+     *
+     * <p>Must be released using {@link #releaseStatement(String, SQLiteStatement)}.
+     */
+    private SQLiteStatement compileStatement(String sql) {
+        if (isCacheableStatement(sql)) {
+            SQLiteStatement statement = statementCache.get(sql);
+            if (statement == null) {
+                statement = getWritableDatabase().compileStatement(sql);
+                statementCache.put(sql, statement);
+            }
+            return statement;
+        }
+        return getWritableDatabase().compileStatement(sql);
+    }
+
+    private void releaseStatement(String sql, SQLiteStatement statement) {
+        if (isCacheableStatement(sql)) {
+            // Don't keep the arguments (blobs) alive
+            statement.clearBindings();
+        } else {
+            statement.close();
+        }
+    }
+
+    private SQLiteStatement acquireStatement(String sql, @Nullable StatementGroup group) {
+        return group != null ? group.acquire(sql) : compileStatement(sql);
+    }
+
+    private void releaseStatement(String sql, SQLiteStatement statement, @Nullable StatementGroup group) {
+        if (group != null) {
+            // Kept for the next operation
+            statement.clearBindings();
+        } else {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    /**
+     * Statement shared by consecutive batch operations having the same sql.
+     */
+    private final class StatementGroup {
+        @Nullable
+        private String sql;
+        @Nullable
+        private SQLiteStatement statement;
+
+        SQLiteStatement acquire(String sql) {
+            if (statement == null) {
+                statement = compileStatement(sql);
+                this.sql = sql;
+            }
+            return statement;
+        }
+
+        // Release the statement if the next sql is different
+        void next(@Nullable String nextSql) {
+            if (sql != null && !sql.equals(nextSql)) {
+                release();
             }
         }
+
+        void release() {
+            if (statement != null) {
+                releaseStatement(sql, statement);
+                statement = null;
+                sql = null;
+            }
+        }
+    }
+
+    // Called on schema changes
+    private void clearStatementCache() {
+        if (statementCache != null) {
+            statementCache.evictAll();
+        }
+    }
+
+    void putDebugInfo(Map<String, Object> info) {
+        synchronized (cursors) {
+            info.put("cursorCount", cursors.size());
+            info.put("cursorOpenedCount", openedCursorCount);
+            info.put("cursorExpiredCount", expiredCursorCount);
+            info.put("cursorEvictedCount", evictedCursorCount);
+        }
+        if (statementCache != null) {
+            info.put("statementCacheSize", statementCache.size());
+            info.put("statementCacheHitCount", statementCache.hitCount());
+            info.put("statementCacheMissCount", statementCache.missCount());
+        }
     }
 
 
@@ -491,7 +1514,12 @@ class Database {
 
     // Return true on success
     private boolean doExecute(final Operation operation) {
-        if (!executeOrError(operation)) {
+        return doExecute(operation, null);
+    }
+
+    // Return true on success
+    private boolean doExecute(final Operation operation, @Nullable StatementGroup group) {
+        if (!executeOrError(operation, group)) {
             return false;
         }
         operation.success(null);
@@ -504,17 +1532,27 @@ class Database {
 
     // Return true on success
     private boolean doInsert(final Operation operation) {
+        return doInsert(operation, null);
+    }
+
+    // Return true on success
+    private boolean doInsert(final Operation operation, @Nullable StatementGroup group) {
         SqlCommand command = operation.getSqlCommand();
         if (LogLevel.hasSqlLevel(logLevel)) {
             Log.d(TAG, getThreadLogPrefix() + command);
         }
 
         try {
-            SQLiteDatabase db = getWritableDatabase();
             ///  create statement
-            SQLiteStatement statement = db.compileStatement(command.getSql());
-            bindArgs(statement, command.getSqlArguments());
-            long id = statement.executeInsert();
+            String sql = command.getSql();
+            SQLiteStatement statement = acquireStatement(sql, group);
+            long id;
+            try {
+                command.bindTo(statement);
+                id = statement.executeInsert();
+            } finally {
+                releaseStatement(sql, statement, group);
+            }
             if (operation.getNoResult()) {
                 operation.success(null);
             } else {
@@ -527,23 +1565,83 @@ class Database {
         }
     }
 
+    public void insertMany(final @NonNull Operation operation) {
+        wrapSqlOperationHandler(operation, () -> doInsertMany(operation));
+    }
+
+    /**
+     * Insert all the argument rows using the same statement, in a single savepoint, which also
+     * works within a transaction started with a raw BEGIN like Dart transactions.
+     *
+     * <p>Result is null or the row ids as a long[].
+     */
+    private boolean doInsertMany(final @NonNull Operation operation) {
+        String sql = operation.getArgument(PARAM_SQL);
+        List<List<Object>> argumentsList = operation.getArgument(PARAM_SQL_ARGUMENTS_LIST);
+        int count = argumentsList == null ? 0 : argumentsList.size();
+        if (LogLevel.hasSqlLevel(logLevel)) {
+            Log.d(TAG, getThreadLogPrefix() + sql + " (" + count + " rows)");
+        }
+        boolean noResult = operation.getNoResult();
+        long[] ids = noResult ? null : new long[count];
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            SQLiteStatement statement = compileStatement(sql);
+            try {
+                beginAtomic(db, INSERT_MANY_SAVEPOINT);
+                boolean success = false;
+                try {
+                    for (int i = 0; i < count; i++) {
+                        List<Object> arguments = argumentsList.get(i);
+                        statement.clearBindings();
+                        SqlCommand.bindArguments(statement, arguments);
+                        long id = statement.executeInsert();
+                        if (ids != null) {
+                            ids[i] = id;
+                        }
+                    }
+                    success = true;
+                } finally {
+                    endAtomic(db, INSERT_MANY_SAVEPOINT, success);
+                }
+            } finally {
+                releaseStatement(sql, statement);
+            }
+            operation.success(ids);
+            return true;
+        } catch (Exception exception) {
+            handleException(exception, operation);
+            return false;
+        }
+    }
+
     public void update(final @NonNull Operation operation) {
         wrapSqlOperationHandler(operation, () -> doUpdate(operation));
     }
 
     // Return true on success
     private boolean doUpdate(final Operation operation) {
+        return doUpdate(operation, null);
+    }
+
+    // Return true on success
+    private boolean doUpdate(final Operation operation, @Nullable StatementGroup group) {
         SqlCommand command = operation.getSqlCommand();
         if (LogLevel.hasSqlLevel(logLevel)) {
             Log.d(TAG, getThreadLogPrefix() + command);
         }
 
         try {
-            SQLiteDatabase db = getWritableDatabase();
             ///  create statement
-            SQLiteStatement statement = db.compileStatement(command.getSql());
-            bindArgs(statement, command.getSqlArguments());
-            int count = statement.executeUpdateDelete();
+            String sql = command.getSql();
+            SQLiteStatement statement = acquireStatement(sql, group);
+            int count;
+            try {
+                command.bindTo(statement);
+                count = statement.executeUpdateDelete();
+            } finally {
+                releaseStatement(sql, statement, group);
+            }
             if (operation.getNoResult()) {
                 operation.success(null);
             } else {
@@ -561,77 +1659,134 @@ class Database {
 
         boolean noResult = mainOperation.getNoResult();
         boolean continueOnError = mainOperation.getContinueOnError();
+        boolean atomic = Boolean.TRUE.equals(mainOperation.getArgument(PARAM_ATOMIC));
 
         List<Map<String, Object>> operations = mainOperation.getArgument(PARAM_OPERATIONS);
         List<Map<String, Object>> results = new ArrayList<>();
 
+        BatchOperation failedOperation;
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            if (atomic) {
+                beginAtomic(db, BATCH_SAVEPOINT);
+            }
+            boolean success = false;
+            try {
+                failedOperation = runBatchOperations(operations, noResult, continueOnError, atomic, results);
+                success = failedOperation == null;
+            } finally {
+                if (atomic) {
+                    endAtomic(db, BATCH_SAVEPOINT, success);
+                }
+            }
+        } catch (Exception exception) {
+            handleException(exception, mainOperation);
+            return;
+        }
+        if (failedOperation != null) {
+            // we stop at the first error
+            failedOperation.handleError(result);
+            return;
+        }
+        // Set the results of all operations
+        // devLog(TAG, "results " + results);
+        if (noResult) {
+            result.success(null);
+        } else {
+            result.success(results);
+        }
+    }
+
+    /**
+     * Run the batch operations, adding their results.
+     *
+     * @param atomic when true with continueOnError, each operation runs in its own savepoint
+     * @return the operation that stopped the batch, null if none
+     */
+    @Nullable
+    private BatchOperation runBatchOperations(List<Map<String, Object>> operations, boolean noResult, boolean continueOnError, boolean atomic, List<Map<String, Object>> results) {
+        // A failed operation should leave no change
+        boolean isolate = atomic && continueOnError;
+        SQLiteDatabase db = getWritableDatabase();
+        // Consecutive operations with the same sql share the same compiled statement
+        StatementGroup group = new StatementGroup();
+        try {
+            return runBatchOperations(operations, noResult, continueOnError, isolate, results, db, group);
+        } finally {
+            group.release();
+        }
+    }
+
+    @Nullable
+    private BatchOperation runBatchOperations(List<Map<String, Object>> operations, boolean noResult, boolean continueOnError, boolean isolate, List<Map<String, Object>> results, SQLiteDatabase db, StatementGroup group) {
         //devLog(TAG, "operations " + operations);
+        // Reused for each operation, the batch stopping at the first one returned
+        BatchOperation operation = new BatchOperation(noResult);
         for (Map<String, Object> map : operations) {
             //devLog(TAG, "map " + map);
-            BatchOperation operation = new BatchOperation(map, noResult);
+            operation.reset(map);
             String method = operation.getMethod();
             switch (method) {
                 case METHOD_EXECUTE:
-                    if (doExecute(operation)) {
-                        //devLog(TAG, "results: " + operation.getBatchResults());
-                        operation.handleSuccess(results);
-                    } else if (continueOnError) {
-                        operation.handleErrorContinue(results);
-                    } else {
-                        // we stop at the first error
-                        operation.handleError(result);
-                        return;
-                    }
-                    break;
                 case METHOD_INSERT:
-                    if (doInsert(operation)) {
-                        //devLog(TAG, "results: " + operation.getBatchResults());
-                        operation.handleSuccess(results);
-                    } else if (continueOnError) {
-                        operation.handleErrorContinue(results);
-                    } else {
-                        // we stop at the first error
-                        operation.handleError(result);
-                        return;
-                    }
-                    break;
                 case METHOD_QUERY:
-                    if (doQuery(operation)) {
-                        //devLog(TAG, "results: " + operation.getBatchResults());
-                        operation.handleSuccess(results);
-                    } else if (continueOnError) {
-                        operation.handleErrorContinue(results);
-                    } else {
-                        // we stop at the first error
-                        operation.handleError(result);
-                        return;
-                    }
-                    break;
-                ///  Handle both UPDATE and DELETE
                 case METHOD_UPDATE:
-                    if (doUpdate(operation)) {
-                        //devLog(TAG, "results: " + operation.getBatchResults());
-                        operation.handleSuccess(results);
-                    } else if (continueOnError) {
-                        operation.handleErrorContinue(results);
-                    } else {
-                        // we stop at the first error
-                        operation.handleError(result);
-                        return;
-                    }
                     break;
                 default:
-                    result.error(ERROR_BAD_PARAM, "Batch method '" + method + "' not supported", null);
-                    return;
+                    operation.error(ERROR_BAD_PARAM, "Batch method '" + method + "' not supported", null);
+                    return operation;
+            }
+            group.next(operation.getArgument(PARAM_SQL));
+            if (isolate) {
+                beginAtomic(db, BATCH_OPERATION_SAVEPOINT);
+            }
+            boolean success = false;
+            try {
+                success = runBatchOperation(operation, group);
+            } finally {
+                if (isolate) {
+                    endAtomic(db, BATCH_OPERATION_SAVEPOINT, success);
+                }
+            }
+            if (success) {
+                //devLog(TAG, "results: " + operation.getBatchResults());
+                operation.handleSuccess(results);
+            } else if (continueOnError) {
+                operation.handleErrorContinue(results);
+            } else {
+                return operation;
             }
         }
-        // Set the results of all operations
-        // devLog(TAG, "results " + results);
-        if (noResult) {
-            result.success(null);
-        } else {
-            result.success(results);
+        return null;
+    }
+
+    // Return true on success
+    private boolean runBatchOperation(BatchOperation operation, StatementGroup group) {
+        switch (operation.getMethod()) {
+            case METHOD_EXECUTE:
+                return doExecute(operation, group);
+            case METHOD_INSERT:
+                return doInsert(operation, group);
+            case METHOD_QUERY:
+                return doQuery(operation, false);
+            ///  Handle both UPDATE and DELETE
+            default:
+                return doUpdate(operation, group);
+        }
+    }
+
+    // A savepoint starts a transaction when none is active, or nests in the current one, including
+    // a transaction started with a raw BEGIN that SQLiteDatabase.inTransaction() does not report
+    private void beginAtomic(SQLiteDatabase db, String savepoint) {
+        db.execSQL("SAVEPOINT " + savepoint);
+    }
+
+    // Commit on success, rollback otherwise
+    private void endAtomic(SQLiteDatabase db, String savepoint, boolean success) {
+        if (!success) {
+            db.execSQL("ROLLBACK TO " + savepoint);
         }
+        db.execSQL("RELEASE " + savepoint);
     }
 
     synchronized boolean isInTransaction() {
@@ -1,15 +1,29 @@
 package com.tekartik.sqflite;
 
+import static com.tekartik.sqflite.Constant.PRIORITY_BACKGROUND;
+import static com.tekartik.sqflite.Constant.PRIORITY_INTERACTIVE;
+import static com.tekartik.sqflite.Constant.PRIORITY_NORMAL;
+
+import android.os.Process;
+
 import androidx.annotation.Nullable;
 
 interface DatabaseDelegate {
     int getDatabaseId();
 
     boolean isInTransaction();
+
+    // True if read tasks can currently run simultaneously on this database.
+    default boolean canReadConcurrently() {
+        return false;
+    }
 }
 
 final class DatabaseTask {
 
+    // One lane per priority, from PRIORITY_BACKGROUND to PRIORITY_INTERACTIVE.
+    static final int LANE_COUNT = PRIORITY_INTERACTIVE - PRIORITY_BACKGROUND + 1;
+
     // Database this task will be run on.
     //
     // It can be null if the task is not running on any database. e.g. closing a NULL database.
@@ -17,11 +31,54 @@ final class DatabaseTask {
     private final DatabaseDelegate database;
     final Runnable runnable;
 
+    // True if the task only reads the database (query, cursor next).
+    final boolean read;
+
+    // Priority lane, higher runs first.
+    final int lane;
+
+    // Set by the pool when the task is run along other read tasks of the same database.
+    boolean concurrentRead;
+
     DatabaseTask(DatabaseDelegate database, Runnable runnable) {
+        this(database, false, runnable);
+    }
+
+    DatabaseTask(DatabaseDelegate database, boolean read, Runnable runnable) {
+        this(database, read, PRIORITY_NORMAL, runnable);
+    }
+
+    DatabaseTask(DatabaseDelegate database, boolean read, int priority, Runnable runnable) {
         this.database = database;
+        this.read = read;
+        this.lane = Math.max(PRIORITY_BACKGROUND, Math.min(PRIORITY_INTERACTIVE, priority)) - PRIORITY_BACKGROUND;
         this.runnable = runnable;
     }
 
+    boolean isInteractive() {
+        return lane == LANE_COUNT - 1;
+    }
+
+    /**
+     * Run the task on the current thread.
+     *
+     * @param threadPriority      priority of the current thread
+     * @param interactivePriority thread priority while running an interactive task, if any
+     */
+    void run(int threadPriority, @Nullable Integer interactivePriority) {
+        boolean changePriority = interactivePriority != null && isInteractive() && interactivePriority != threadPriority;
+        if (changePriority) {
+            Process.setThreadPriority(interactivePriority);
+        }
+        try {
+            runnable.run();
+        } finally {
+            if (changePriority) {
+                Process.setThreadPriority(threadPriority);
+            }
+        }
+    }
+
     public boolean isInTransaction() {
         return database != null && database.isInTransaction();
     }
@@ -29,4 +86,8 @@ final class DatabaseTask {
     public Integer getDatabaseId() {
         return database != null ? database.getDatabaseId() : null;
     }
+
+    public boolean canReadConcurrently() {
+        return read && database != null && database.canReadConcurrently();
+    }
 }
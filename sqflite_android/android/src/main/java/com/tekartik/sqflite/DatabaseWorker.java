@@ -3,6 +3,8 @@ package com.tekartik.sqflite;
 import android.os.Handler;
 import android.os.HandlerThread;
 
+import androidx.annotation.Nullable;
+
 /**
  * Worker that accepts {@link DatabaseTask}.
  *
@@ -12,6 +14,9 @@ class DatabaseWorker {
 
     private final String name;
     private final int priority;
+    // Thread priority while running interactive tasks, set by the pool
+    @Nullable
+    Integer interactivePriority;
 
     private HandlerThread handlerThread;
     private Handler handler;
@@ -19,6 +24,9 @@ class DatabaseWorker {
 
     private DatabaseTask lastTask;
 
+    // Incremented by the pool each time the worker becomes idle.
+    int idleCount;
+
     DatabaseWorker(String name, int priority) {
         this.name = name;
         this.priority = priority;
@@ -43,6 +51,10 @@ class DatabaseWorker {
         return lastTask != null && lastTask.isInTransaction();
     }
 
+    boolean isLastTaskConcurrentRead() {
+        return lastTask != null && lastTask.concurrentRead;
+    }
+
     Integer lastTaskDatabaseId() {
         return lastTask != null ? lastTask.getDatabaseId() : null;
     }
@@ -51,8 +63,15 @@ class DatabaseWorker {
         handler.post(() -> this.work(task));
     }
 
+    // Used by the pool to retire idle workers.
+    synchronized void postDelayed(Runnable runnable, long delayMillis) {
+        if (handler != null) {
+            handler.postDelayed(runnable, delayMillis);
+        }
+    }
+
     void work(DatabaseTask task) {
-        task.runnable.run();
+        task.run(priority, interactivePriority);
         lastTask = task;
         onIdle.run();
     }
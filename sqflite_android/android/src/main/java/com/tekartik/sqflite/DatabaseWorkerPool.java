@@ -1,12 +1,16 @@
 package com.tekartik.sqflite;
 
-import android.os.Handler;
-import android.os.HandlerThread;
+import static com.tekartik.sqflite.Constant.PRIORITY_NORMAL;
 
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -23,12 +27,33 @@ public interface DatabaseWorkerPool {
     // Some rules for assigning a task to a worker.
     // - All tasks in a transaction go to the same worker. Otherwise errors will happen.
     // - All tasks belonging to the same database run in FIFO manner. No overlapping between any
-    //   two tasks.
+    //   two tasks. The only exception are read tasks of a database having read connections
+    //   outside a transaction, that run on read connections as soon as a worker is idle, along
+    //   other reads and the current write.
     // - Tasks belonging to different databases could be run simultaneously but not necessarily
     //   in FIFO manner.
     void post(DatabaseTask task);
 
     default void post(Database database, Runnable runnable) {
+        post(database, false, PRIORITY_NORMAL, runnable);
+    }
+
+    // Posts a task with a given priority (PRIORITY_XXX).
+    //
+    // Pending tasks of higher priority run first, a database having such task pending runs all
+    // its previous tasks first.
+    default void post(Database database, int priority, Runnable runnable) {
+        post(database, false, priority, runnable);
+    }
+
+    // Posts a task that only reads the database.
+    //
+    // When the database has read connections, such tasks can run simultaneously.
+    default void postRead(Database database, int priority, Runnable runnable) {
+        post(database, true, priority, runnable);
+    }
+
+    default void post(Database database, boolean read, int priority, Runnable runnable) {
         DatabaseDelegate delegate = database == null ? null : new DatabaseDelegate() {
             @Override
             public int getDatabaseId() {
@@ -39,84 +64,141 @@ public interface DatabaseWorkerPool {
             public boolean isInTransaction() {
                 return database.isInTransaction();
             }
+
+            @Override
+            public boolean canReadConcurrently() {
+                return database.canReadConcurrently();
+            }
         };
-        this.post(new DatabaseTask(delegate, runnable));
+        this.post(new DatabaseTask(delegate, read, priority, runnable));
     }
 
-    static DatabaseWorkerPool create(String name, int numberOfWorkers, int priority) {
-        if (numberOfWorkers == 1) {
-            return new SingleDatabaseWorkerPoolImpl(name, priority);
-        }
-        return new DatabaseWorkerPoolImpl(name, numberOfWorkers, priority);
+    // Changes the number of workers, returns false if not supported and the pool must be
+    // re-created.
+    default boolean resize(int minWorkers, int maxWorkers) {
+        return false;
+    }
+
+    /**
+     * @param minWorkers          workers always running
+     * @param maxWorkers          workers running when many databases are busy
+     * @param idleTimeoutMillis   delay after which an idle worker above minWorkers stops
+     * @param priority            thread priority
+     * @param interactivePriority thread priority while running interactive tasks, null to keep
+     *                            the same priority
+     */
+    static DatabaseWorkerPool create(String name, int minWorkers, int maxWorkers, long idleTimeoutMillis, int priority, @Nullable Integer interactivePriority) {
+        // Also used for a single worker so that the pool can be resized while databases are opened
+        return new DatabaseWorkerPoolImpl(name, minWorkers, maxWorkers, idleTimeoutMillis, priority, interactivePriority);
     }
 }
 
-class SingleDatabaseWorkerPoolImpl implements DatabaseWorkerPool {
+class DatabaseWorkerPoolImpl implements DatabaseWorkerPool {
 
     final String name;
     final int priority;
+    @Nullable
+    final Integer interactivePriority;
+    final long idleTimeoutMillis;
+
+    // Workers are started on demand between minWorkers and maxWorkers.
+    private int minWorkers;
+    private int maxWorkers;
+    private int workerCount;
+    private int lastWorkerIndex;
+
+    // Idle workers, in the order they became idle.
+    private final Set<DatabaseWorker> idleWorkers = new LinkedHashSet<>();
+    private final Set<DatabaseWorker> busyWorkers = new HashSet<>();
 
-    private HandlerThread handlerThread;
-    private Handler handler;
+    // Pending tasks per database id (FIFO).
+    private final Map<Integer, DatabaseQueue> databaseQueues = new HashMap<>();
 
-    SingleDatabaseWorkerPoolImpl(String name, int priority) {
-        this.name = name;
-        this.priority = priority;
+    // Tasks not bound to any database, they can run on any worker.
+    private final DatabaseQueue noDatabaseQueue = new DatabaseQueue(null);
+
+    // Databases having pending tasks that any worker can run.
+    private final ReadyDatabaseQueues readyQueues = new ReadyDatabaseQueues();
+
+    // Databases having pending tasks that only one (busy) worker can run, i.e. in transaction.
+    private final Map<DatabaseWorker, ArrayDeque<DatabaseQueue>> workerReadyQueues = new HashMap<>();
+
+    // Fixed number of workers
+    DatabaseWorkerPoolImpl(String name, int numberOfWorkers, int priority) {
+        this(name, numberOfWorkers, numberOfWorkers, 0, priority, null);
     }
 
-    @Override
-    public void start() {
-        handlerThread = new HandlerThread(name, priority);
-        handlerThread.start();
-        handler = new Handler(handlerThread.getLooper());
+    DatabaseWorkerPoolImpl(String name, int minWorkers, int maxWorkers, long idleTimeoutMillis, int priority, @Nullable Integer interactivePriority) {
+        this.name = name;
+        this.minWorkers = minWorkers;
+        this.maxWorkers = Math.max(1, Math.max(minWorkers, maxWorkers));
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.priority = priority;
+        this.interactivePriority = interactivePriority;
     }
 
     @Override
-    public void quit() {
-        if (handlerThread != null) {
-            handlerThread.quit();
-            handlerThread = null;
-            handler = null;
+    public synchronized void start() {
+        while (workerCount < minWorkers) {
+            idleWorkers.add(startWorker());
         }
     }
 
-    @Override
-    public void post(DatabaseTask task) {
-        handler.post(task.runnable);
+    private DatabaseWorker startWorker() {
+        DatabaseWorker worker = createWorker(name + lastWorkerIndex++, priority);
+        worker.interactivePriority = interactivePriority;
+        worker.start(
+                () -> {
+                    onWorkerIdle(worker);
+                });
+        workerCount++;
+        return worker;
     }
-}
 
-class DatabaseWorkerPoolImpl implements DatabaseWorkerPool {
-
-    final String name;
-    final int numberOfWorkers;
-    final int priority;
+    int getWorkerCount() {
+        return workerCount;
+    }
 
-    private final LinkedList<DatabaseTask> waitingList = new LinkedList<>();
-    private final Set<DatabaseWorker> idleWorkers = new HashSet<>();
-    private final Set<DatabaseWorker> busyWorkers = new HashSet<>();
+    @Override
+    public synchronized boolean resize(int minWorkers, int maxWorkers) {
+        this.minWorkers = minWorkers;
+        this.maxWorkers = Math.max(1, Math.max(minWorkers, maxWorkers));
+        start();
+        // Busy workers above the maximum stop once idle.
+        for (DatabaseWorker worker : new ArrayList<>(idleWorkers)) {
+            if (workerCount <= this.maxWorkers) {
+                break;
+            }
+            if (!isOwner(worker)) {
+                idleWorkers.remove(worker);
+                retireWorker(worker);
+            }
+        }
+        dispatch();
+        return true;
+    }
 
-    // A map from database id to the only eligible worker.
-    //
-    // When a database id is found in the map, tasks of the database should only be run by the
-    // corresponding worker. Otherwise, any worker is eligible.
-    private final Map<Integer, DatabaseWorker> onlyEligibleWorkers = new HashMap<>();
+    private void retireWorker(DatabaseWorker worker) {
+        workerCount--;
+        worker.quit();
+    }
 
-    DatabaseWorkerPoolImpl(String name, int numberOfWorkers, int priority) {
-        this.name = name;
-        this.numberOfWorkers = numberOfWorkers;
-        this.priority = priority;
+    // True if the worker is kept for a transaction.
+    private boolean isOwner(DatabaseWorker worker) {
+        for (DatabaseQueue queue : databaseQueues.values()) {
+            if (queue.owner == worker) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    @Override
-    public synchronized void start() {
-        for (int i = 0; i < numberOfWorkers; i++) {
-            DatabaseWorker worker = createWorker(name + i, priority);
-            worker.start(
-                    () -> {
-                        onWorkerIdle(worker);
-                    });
-            idleWorkers.add(worker);
+    // Called on the worker thread once the idle timeout expired.
+    private synchronized void onWorkerIdleTimeout(DatabaseWorker worker, int idleCount) {
+        // Still idle since then?
+        if (worker.idleCount == idleCount && workerCount > minWorkers && !isOwner(worker)
+                && idleWorkers.remove(worker)) {
+            retireWorker(worker);
         }
     }
 
@@ -136,68 +218,317 @@ class DatabaseWorkerPoolImpl implements DatabaseWorkerPool {
 
     @Override
     public synchronized void post(DatabaseTask task) {
-        waitingList.add(task);
+        DatabaseQueue queue = getDatabaseQueue(task);
+        queue.add(task);
+        DatabaseWorker owner = queue.owner;
+        if (owner == null || queue.running) {
+            // Might raise the priority of an already scheduled database. Reads can run along the
+            // running task.
+            if (queue.isReady()) {
+                readyQueues.schedule(queue);
+                dispatch();
+            }
+        } else if (!queue.waitingOwner) {
+            if (idleWorkers.remove(owner)) {
+                // Idle worker kept for a transaction.
+                runNextTask(queue, owner);
+            } else {
+                // Wait for the worker kept for a transaction to be idle.
+                queue.waitingOwner = true;
+                ArrayDeque<DatabaseQueue> queues = workerReadyQueues.get(owner);
+                if (queues == null) {
+                    queues = new ArrayDeque<>();
+                    workerReadyQueues.put(owner, queues);
+                }
+                queues.add(queue);
+            }
+        }
+        // Otherwise the owner is running a task of this database and will pick the next one
+        // when idle.
+    }
 
-        Set<DatabaseWorker> workers = new HashSet<>(idleWorkers);
-        for (DatabaseWorker worker : workers) {
-            tryPostingTaskToWorker(worker);
+    // Find or create the queue of a task
+    private DatabaseQueue getDatabaseQueue(DatabaseTask task) {
+        Integer databaseId = task.getDatabaseId();
+        if (databaseId == null) {
+            return noDatabaseQueue;
         }
+        DatabaseQueue queue = databaseQueues.get(databaseId);
+        if (queue == null) {
+            queue = new DatabaseQueue(databaseId);
+            databaseQueues.put(databaseId, queue);
+        }
+        return queue;
     }
 
-    private synchronized void tryPostingTaskToWorker(DatabaseWorker worker) {
-        DatabaseTask task = findTaskForWorker(worker);
-        if (task != null) {
-            // Mark the worker busy.
-            busyWorkers.add(worker);
-            idleWorkers.remove(worker);
+    // Assign ready databases to idle workers, higher priority first, starting new workers
+    // if needed.
+    private void dispatch() {
+        while (!readyQueues.isEmpty()) {
+            if (idleWorkers.isEmpty() && workerCount >= maxWorkers) {
+                break;
+            }
+            DatabaseQueue queue = readyQueues.poll();
+            if (!queue.isReady()) {
+                // Its reads were run by its owner meanwhile.
+                continue;
+            }
+            DatabaseWorker worker;
+            if (!idleWorkers.isEmpty()) {
+                Iterator<DatabaseWorker> iterator = idleWorkers.iterator();
+                worker = iterator.next();
+                iterator.remove();
+            } else {
+                worker = startWorker();
+            }
+            runNextTask(queue, worker);
+        }
+    }
 
-            // Since now, the worker is the only eligible one to work on the corresponding database.
-            // Allowing others to work on the same database could break the "FIFO manner".
-            if (task.getDatabaseId() != null) {
-                onlyEligibleWorkers.put(task.getDatabaseId(), worker);
+    // The worker must have been removed from the idle workers.
+    private void runNextTask(DatabaseQueue queue, DatabaseWorker worker) {
+        // The owner runs the tasks in order, other workers the next ready one.
+        DatabaseTask task = queue.owner == worker ? queue.poll() : queue.pollReady();
+        busyWorkers.add(worker);
+        if (queue.databaseId != null) {
+            // Only reads are ready while another worker owns the database.
+            if (queue.owner != null ? queue.owner != worker : task.canReadConcurrently()) {
+                // Other workers can run the following read tasks.
+                task.concurrentRead = true;
+                queue.readers++;
+                if (queue.isReady()) {
+                    readyQueues.schedule(queue);
+                }
+            } else {
+                // Since now, the worker is the only eligible one to work on the corresponding
+                // database. Allowing others to work on the same database could break the
+                // "FIFO manner".
+                task.concurrentRead = false;
+                queue.owner = worker;
+                queue.running = true;
             }
-            worker.postTask(task);
+        } else if (!queue.tasks.isEmpty()) {
+            // Tasks without database can run simultaneously.
+            readyQueues.schedule(queue);
         }
+        worker.postTask(task);
     }
 
-    private synchronized DatabaseTask findTaskForWorker(DatabaseWorker worker) {
-        ListIterator<DatabaseTask> iter = waitingList.listIterator();
-        while (iter.hasNext()) {
-            DatabaseTask task = iter.next();
-            DatabaseWorker onlyEligibleWorker = null;
-            if (task.getDatabaseId() != null) {
-                onlyEligibleWorker = onlyEligibleWorkers.get(task.getDatabaseId());
+    private synchronized void onWorkerIdle(DatabaseWorker worker) {
+        busyWorkers.remove(worker);
+        worker.idleCount++;
+
+        Integer databaseId = worker.lastTaskDatabaseId();
+        DatabaseQueue queue = databaseId == null ? null : databaseQueues.get(databaseId);
+        if (queue != null && worker.isLastTaskConcurrentRead()) {
+            queue.readers--;
+            if (queue.isReady()) {
+                readyQueues.schedule(queue);
+            } else if (queue.isIdle()) {
+                databaseQueues.remove(databaseId);
+            }
+        } else if (queue != null && queue.owner == worker) {
+            queue.running = false;
+            // The last task was done and any other worker is eligible to work on the
+            // corresponding database since then. However, there is one exception that the last
+            // task is in transaction and current worker is still the only eligible one.
+            if (worker.isLastTaskInTransaction()) {
+                if (!queue.tasks.isEmpty()) {
+                    runNextTask(queue, worker);
+                    return;
+                }
+            } else {
+                queue.owner = null;
+                if (queue.isReady()) {
+                    readyQueues.schedule(queue);
+                } else if (queue.isIdle()) {
+                    databaseQueues.remove(databaseId);
+                }
+            }
+        }
+
+        // Databases kept for this worker first.
+        ArrayDeque<DatabaseQueue> queues = workerReadyQueues.get(worker);
+        if (queues != null) {
+            DatabaseQueue workerQueue = queues.poll();
+            if (queues.isEmpty()) {
+                workerReadyQueues.remove(worker);
             }
-            // Skip current task when the worker is not eligible for it.
-            if (onlyEligibleWorker != null && onlyEligibleWorker != worker) {
-                continue;
+            if (workerQueue != null) {
+                workerQueue.waitingOwner = false;
+                runNextTask(workerQueue, worker);
+                dispatch();
+                return;
+            }
+        }
+        idleWorkers.add(worker);
+        dispatch();
+        if (idleWorkers.contains(worker) && workerCount > minWorkers && !isOwner(worker)) {
+            if (workerCount > maxWorkers) {
+                // After a resize
+                idleWorkers.remove(worker);
+                retireWorker(worker);
             } else {
-                iter.remove();
-                return task;
+                final int idleCount = worker.idleCount;
+                worker.postDelayed(() -> onWorkerIdleTimeout(worker, idleCount), idleTimeoutMillis);
+            }
+        }
+    }
+}
+
+/**
+ * Pending tasks of one database.
+ */
+final class DatabaseQueue {
+    // null for tasks not bound to a database.
+    @Nullable
+    final Integer databaseId;
+    final ArrayDeque<DatabaseTask> tasks = new ArrayDeque<>();
+
+    // Pending task count per lane.
+    private final int[] laneTaskCounts = new int[DatabaseTask.LANE_COUNT];
+
+    // The only eligible worker, if any.
+    //
+    // When set, tasks of the database should only be run by this worker. Otherwise, any
+    // worker is eligible.
+    @Nullable
+    DatabaseWorker owner;
+
+    // True when the owner is running a task of this database.
+    boolean running;
+
+    // True when waiting for its owner to be idle.
+    boolean waitingOwner;
+
+    // Count of read tasks running simultaneously.
+    int readers;
+
+    // Count of pending read tasks.
+    private int readTaskCount;
+
+    // Lane of the ready queue it is in, -1 if none.
+    int scheduledLane = -1;
+
+    DatabaseQueue(@Nullable Integer databaseId) {
+        this.databaseId = databaseId;
+    }
+
+    void add(DatabaseTask task) {
+        tasks.add(task);
+        laneTaskCounts[task.lane]++;
+        if (task.read) {
+            readTaskCount++;
+        }
+    }
+
+    DatabaseTask poll() {
+        DatabaseTask task = tasks.poll();
+        if (task != null) {
+            removed(task);
+        }
+        return task;
+    }
+
+    // Poll the next task any worker can run, see isReady().
+    DatabaseTask pollReady() {
+        DatabaseTask task = peekReady();
+        if (task != null) {
+            tasks.removeFirstOccurrence(task);
+            removed(task);
+        }
+        return task;
+    }
+
+    private void removed(DatabaseTask task) {
+        laneTaskCounts[task.lane]--;
+        if (task.read) {
+            readTaskCount--;
+        }
+    }
+
+    // The first task without owner, otherwise the first read that can run on a read connection
+    // along the running write, before other pending writes.
+    @Nullable
+    private DatabaseTask peekReady() {
+        if (owner == null) {
+            return tasks.peek();
+        }
+        if (readTaskCount > 0) {
+            for (DatabaseTask task : tasks) {
+                if (task.canReadConcurrently()) {
+                    return task;
+                }
             }
         }
         return null;
     }
 
-    private synchronized void onWorkerIdle(DatabaseWorker worker) {
-        // Clone idleWorkers before it get modified.
-        Set<DatabaseWorker> others = new HashSet<>(idleWorkers);
+    // Highest lane of the pending tasks.
+    int getLane() {
+        for (int lane = DatabaseTask.LANE_COUNT - 1; lane > 0; lane--) {
+            if (laneTaskCounts[lane] > 0) {
+                return lane;
+            }
+        }
+        return 0;
+    }
 
-        // Mark the worker idle.
-        busyWorkers.remove(worker);
-        idleWorkers.add(worker);
+    // True if any worker can run a task, running reads only use read connections so that they
+    // do not delay writes.
+    boolean isReady() {
+        return peekReady() != null;
+    }
 
-        // The last task was done and any other worker is eligible to work on the corresponding
-        // database since then. However, there is one exception that the last task is in
-        // transaction and current worker is still the only eligible one.
-        if (!worker.isLastTaskInTransaction() && worker.lastTaskDatabaseId() != null) {
-            onlyEligibleWorkers.remove(worker.lastTaskDatabaseId());
+    // True if nothing is pending nor running.
+    boolean isIdle() {
+        return tasks.isEmpty() && owner == null && readers == 0;
+    }
+}
+
+/**
+ * Database queues ready to run, one FIFO per priority lane.
+ */
+final class ReadyDatabaseQueues {
+    private final List<ArrayDeque<DatabaseQueue>> lanes = new ArrayList<>(DatabaseTask.LANE_COUNT);
+
+    ReadyDatabaseQueues() {
+        for (int i = 0; i < DatabaseTask.LANE_COUNT; i++) {
+            lanes.add(new ArrayDeque<>());
+        }
+    }
+
+    // Add the queue in the lane of its pending tasks, moving it up if already there.
+    void schedule(DatabaseQueue queue) {
+        int lane = queue.getLane();
+        if (queue.scheduledLane >= lane) {
+            return;
         }
-        tryPostingTaskToWorker(worker);
+        if (queue.scheduledLane >= 0) {
+            lanes.get(queue.scheduledLane).removeFirstOccurrence(queue);
+        }
+        queue.scheduledLane = lane;
+        lanes.get(lane).add(queue);
+    }
+
+    @Nullable
+    DatabaseQueue poll() {
+        for (int lane = DatabaseTask.LANE_COUNT - 1; lane >= 0; lane--) {
+            DatabaseQueue queue = lanes.get(lane).poll();
+            if (queue != null) {
+                queue.scheduledLane = -1;
+                return queue;
+            }
+        }
+        return null;
+    }
 
-        // The eligible relationship was changed above. Try posting tasks again.
-        for (DatabaseWorker other : others) {
-            tryPostingTaskToWorker(other);
+    boolean isEmpty() {
+        for (ArrayDeque<DatabaseQueue> lane : lanes) {
+            if (!lane.isEmpty()) {
+                return false;
+            }
         }
+        return true;
     }
 }
@@ -0,0 +1,298 @@
+package com.tekartik.sqflite;
+
+import android.database.Cursor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Query results written as a UTF-8 JSON array of objects, for the `json` result format.
+ * <p>
+ * Rows are written straight from the cursor, without intermediate collections, keyed by column name:
+ * <pre>
+ * [{"id":1,"name":"a"},{"id":2,"name":null}]
+ * </pre>
+ * Blobs are written as base64 strings, non-finite doubles (NaN, Infinity) as null.
+ */
+class JsonRows {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+
+    private byte[] buffer;
+    private int size;
+    // Encoded "name": of each column
+    private final byte[][] keys;
+    private int rowCount;
+    // Index of the next value in the current row
+    private int column;
+
+    JsonRows(String[] columnNames) {
+        this(columnNames, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity initial buffer size in bytes
+     */
+    JsonRows(String[] columnNames, int capacity) {
+        buffer = new byte[Math.max(capacity, 16)];
+        keys = new byte[columnNames.length][];
+        for (int i = 0; i < columnNames.length; i++) {
+            int start = size;
+            writeString(columnNames[i]);
+            writeByte(':');
+            keys[i] = Arrays.copyOfRange(buffer, start, size);
+        }
+        size = 0;
+        writeByte('[');
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    // Size in bytes, since the last flush if any
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Add the current cursor row.
+     */
+    void addRow(Cursor cursor) {
+        for (int i = 0; i < keys.length; i++) {
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    putLong(cursor.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    putDouble(cursor.getDouble(i));
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    putString(cursor.getString(i));
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    putBlob(cursor.getBlob(i));
+                    break;
+                default:
+                    putNull();
+                    break;
+            }
+        }
+        endRow();
+    }
+
+    /**
+     * Called once a value was written for each column.
+     */
+    void endRow() {
+        if (column == 0) {
+            // No column
+            startRow();
+        }
+        writeByte('}');
+        column = 0;
+        rowCount++;
+    }
+
+    void putNull() {
+        startValue();
+        writeBytes(NULL);
+    }
+
+    void putLong(long value) {
+        startValue();
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    void putDouble(double value) {
+        startValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeBytes(NULL);
+        } else {
+            // Such as 1.5, 1.0E10 or 1.0E-5, all valid JSON numbers
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    void putString(String value) {
+        startValue();
+        writeString(value);
+    }
+
+    void putBlob(byte[] value) {
+        startValue();
+        ensureCapacity(((value.length + 2) / 3) * 4 + 2);
+        buffer[size++] = '"';
+        int i = 0;
+        for (; i + 2 < value.length; i += 3) {
+            int bits = (value[i] & 0xff) << 16 | (value[i + 1] & 0xff) << 8 | (value[i + 2] & 0xff);
+            buffer[size++] = BASE64[bits >> 18];
+            buffer[size++] = BASE64[(bits >> 12) & 0x3f];
+            buffer[size++] = BASE64[(bits >> 6) & 0x3f];
+            buffer[size++] = BASE64[bits & 0x3f];
+        }
+        int remaining = value.length - i;
+        if (remaining > 0) {
+            int bits = (value[i] & 0xff) << 16 | (remaining == 2 ? (value[i + 1] & 0xff) << 8 : 0);
+            buffer[size++] = BASE64[bits >> 18];
+            buffer[size++] = BASE64[(bits >> 12) & 0x3f];
+            buffer[size++] = remaining == 2 ? BASE64[(bits >> 6) & 0x3f] : (byte) '=';
+            buffer[size++] = '=';
+        }
+        buffer[size++] = '"';
+    }
+
+    // Separator and key of the next value
+    private void startValue() {
+        if (column == 0) {
+            startRow();
+        } else {
+            writeByte(',');
+        }
+        if (column < keys.length) {
+            writeBytes(keys[column]);
+        }
+        column++;
+    }
+
+    private void startRow() {
+        if (rowCount > 0) {
+            writeByte(',');
+        }
+        writeByte('{');
+    }
+
+    // Quoted, escaped and UTF-8 encoded
+    private void writeString(String value) {
+        int length = value.length();
+        // Worst case of an escaped control char (6 bytes) per char
+        ensureCapacity(length * 6 + 2);
+        byte[] buffer = this.buffer;
+        int size = this.size;
+        buffer[size++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    buffer[size++] = '\\';
+                    buffer[size++] = (byte) c;
+                } else if (c >= 0x20) {
+                    buffer[size++] = (byte) c;
+                } else if (c == '\n') {
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'n';
+                } else if (c == '\r') {
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'r';
+                } else if (c == '\t') {
+                    buffer[size++] = '\\';
+                    buffer[size++] = 't';
+                } else {
+                    size = writeUnicodeEscape(buffer, size, c);
+                }
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xc0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[size++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[size++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // Lone surrogate, not valid UTF-8
+                size = writeUnicodeEscape(buffer, size, c);
+            } else {
+                buffer[size++] = (byte) (0xe0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[size++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        buffer[size++] = '"';
+        this.size = size;
+    }
+
+    private static int writeUnicodeEscape(byte[] buffer, int size, char c) {
+        buffer[size++] = '\\';
+        buffer[size++] = 'u';
+        buffer[size++] = HEX[(c >> 12) & 0xf];
+        buffer[size++] = HEX[(c >> 8) & 0xf];
+        buffer[size++] = HEX[(c >> 4) & 0xf];
+        buffer[size++] = HEX[c & 0xf];
+        return size;
+    }
+
+    private void writeAscii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) b;
+    }
+
+    private void ensureCapacity(int count) {
+        if (buffer.length - size < count) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + count));
+        }
+    }
+
+    /**
+     * Write the pending bytes at the current channel position. Used to write large results to a
+     * file without keeping them in memory.
+     */
+    void flushTo(FileChannel channel) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, size);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        size = 0;
+    }
+
+    /**
+     * Close the JSON array and flush it, no more rows must be added.
+     */
+    void finishTo(FileChannel channel) throws IOException {
+        writeByte(']');
+        flushTo(channel);
+    }
+
+    /**
+     * @return the JSON array, no more rows must be added, nor flushed before
+     */
+    byte[] toByteArray() {
+        writeByte(']');
+        return buffer.length == size ? buffer : Arrays.copyOf(buffer, size);
+    }
+}
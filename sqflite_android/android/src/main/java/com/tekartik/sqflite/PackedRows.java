@@ -0,0 +1,186 @@
+package com.tekartik.sqflite;
+
+import android.database.Cursor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Query results packed in a single byte array, for the `packed` result format.
+ * <p>
+ * Rows are written straight from the cursor, without intermediate collections.
+ * <p>
+ * Format version 1, all numbers are little endian:
+ * <pre>
+ * uint8   version (1)
+ * int32   column count
+ * column count times:
+ *   int32   name length in bytes
+ *   bytes   name (UTF-8)
+ * int32   row count
+ * row count times, column count times:
+ *   uint8   storage class, same as Cursor.FIELD_TYPE_XXX
+ *           0: null, no data
+ *           1: integer, int64
+ *           2: float, float64
+ *           3: text, int32 length in bytes then UTF-8 bytes
+ *           4: blob, int32 length then bytes
+ * </pre>
+ * A new version will be used for any change in the format.
+ */
+class PackedRows {
+    static final int VERSION = 1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private ByteBuffer buffer;
+    private final int columnCount;
+    private final int rowCountPosition;
+    private int rowCount;
+
+    PackedRows(String[] columnNames) {
+        this(columnNames, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity initial buffer size in bytes
+     */
+    PackedRows(String[] columnNames, int capacity) {
+        buffer = ByteBuffer.allocate(Math.max(capacity, 16)).order(ByteOrder.LITTLE_ENDIAN);
+        columnCount = columnNames.length;
+        buffer.put((byte) VERSION);
+        buffer.putInt(columnCount);
+        for (String name : columnNames) {
+            putBytes(name.getBytes(StandardCharsets.UTF_8));
+        }
+        rowCountPosition = buffer.position();
+        ensureCapacity(4);
+        buffer.putInt(0);
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    // Size in bytes, since the last flush if any
+    int getSize() {
+        return buffer.position();
+    }
+
+    /**
+     * Add the current cursor row.
+     */
+    void addRow(Cursor cursor) {
+        for (int i = 0; i < columnCount; i++) {
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    putLong(cursor.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    putDouble(cursor.getDouble(i));
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    putString(cursor.getString(i));
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    putBlob(cursor.getBlob(i));
+                    break;
+                default:
+                    putNull();
+                    break;
+            }
+        }
+        rowCount++;
+    }
+
+    /**
+     * Called once a value was written for each column.
+     */
+    void endRow() {
+        rowCount++;
+    }
+
+    void putNull() {
+        ensureCapacity(1);
+        buffer.put((byte) Cursor.FIELD_TYPE_NULL);
+    }
+
+    void putLong(long value) {
+        ensureCapacity(9);
+        buffer.put((byte) Cursor.FIELD_TYPE_INTEGER);
+        buffer.putLong(value);
+    }
+
+    void putDouble(double value) {
+        ensureCapacity(9);
+        buffer.put((byte) Cursor.FIELD_TYPE_FLOAT);
+        buffer.putDouble(value);
+    }
+
+    void putString(String value) {
+        ensureCapacity(1);
+        buffer.put((byte) Cursor.FIELD_TYPE_STRING);
+        putBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void putBlob(byte[] value) {
+        ensureCapacity(1);
+        buffer.put((byte) Cursor.FIELD_TYPE_BLOB);
+        putBytes(value);
+    }
+
+    private void putBytes(byte[] bytes) {
+        ensureCapacity(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffer.remaining() < size) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + size);
+            ByteBuffer newBuffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        }
+    }
+
+    /**
+     * Write the pending bytes at the current channel position, the header being written with the
+     * first flush. Used to write large results to a file without keeping them in memory.
+     */
+    void flushTo(FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Flush the remaining rows and write the row count in the header, the channel must have been
+     * empty before the first flush.
+     */
+    void finishTo(FileChannel channel) throws IOException {
+        flushTo(channel);
+        ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, rowCount);
+        long position = rowCountPosition;
+        while (count.hasRemaining()) {
+            position += channel.write(count, position);
+        }
+    }
+
+    /**
+     * @return the packed rows, the buffer must not be used anymore, nor flushed before
+     */
+    byte[] toByteArray() {
+        buffer.putInt(rowCountPosition, rowCount);
+        byte[] array = buffer.array();
+        int length = buffer.position();
+        return array.length == length ? array : Arrays.copyOf(array, length);
+    }
+}
@@ -0,0 +1,54 @@
+package com.tekartik.sqflite;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Sends the pages of streamed cursors, each event being a page having its cursor id.
+ * <p>
+ * The Dart side listens once for all streamed cursors.
+ */
+class QueryStreamHandler implements EventChannel.StreamHandler {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Only accessed on the main thread
+    @Nullable
+    private EventChannel.EventSink eventSink;
+    // Read by workers before reading a page
+    private volatile boolean listening;
+
+    @Override
+    public void onListen(Object arguments, EventChannel.EventSink events) {
+        eventSink = events;
+        listening = true;
+    }
+
+    @Override
+    public void onCancel(Object arguments) {
+        eventSink = null;
+        listening = false;
+    }
+
+    /**
+     * Pages must not be read when false, as they would be dropped.
+     */
+    boolean isListening() {
+        return listening;
+    }
+
+    /**
+     * Can be called from any thread, dropped if Dart stopped listening meanwhile.
+     */
+    void send(Map<String, Object> event) {
+        mainHandler.post(() -> {
+            if (eventSink != null) {
+                eventSink.success(event);
+            }
+        });
+    }
+}
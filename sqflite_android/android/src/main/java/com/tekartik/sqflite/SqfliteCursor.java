@@ -1,18 +1,83 @@
 package com.tekartik.sqflite;
 
 import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
 
 /**
  * Sqflite cursor
+ * <p>
+ * Reads are synchronized on the cursor as the next page can be prefetched or streamed in the
+ * background.
  */
 public class SqfliteCursor {
     final int cursorId;
     final int pageSize;
+    // Max size in bytes of a page, 0 for no limit
+    final int pageMaxSize;
+    // Result format of each page
+    @Nullable
+    final String resultFormat;
+    // Column names only sent with the first page
+    final boolean columnsOnce;
     final Cursor cursor;
+    // Window from the database pool, returned when closed
+    @Nullable
+    CursorWindow window;
+    // Read connection it runs on, not used by other queries until closed
+    @Nullable
+    SQLiteDatabase readConnection;
+    // SystemClock.uptimeMillis() of the last page read, guarded by the database cursors
+    long lastAccessTime;
+    // Next page read ahead, null if none
+    @Nullable
+    Map<String, Object> prefetchedResults;
+    boolean prefetchedHasMoreData;
+    // Error while reading ahead, reported on the next page
+    @Nullable
+    Exception prefetchError;
+    // Set once a page read ahead was too large to be kept, next pages are only read on demand
+    boolean prefetchDisabled;
+    // Pages sent through the query stream, such cursors do not expire
+    volatile boolean streaming;
+    // Pages Dart is ready to receive when streaming
+    int streamCredit;
+    // Set on cancel or close, no more page is read ahead or streamed
+    boolean closed;
+    // Rows of the first page, read with a limited query, to skip before reading the next page
+    int skippedRowCount;
 
-    public SqfliteCursor(int cursorId, int pageSize, Cursor cursor) {
+    public SqfliteCursor(int cursorId, int pageSize, int pageMaxSize, @Nullable String resultFormat, boolean columnsOnce, Cursor cursor) {
         this.cursorId = cursorId;
         this.pageSize = pageSize;
+        this.pageMaxSize = pageMaxSize;
+        this.resultFormat = resultFormat;
+        this.columnsOnce = columnsOnce;
         this.cursor = cursor;
     }
+
+    /**
+     * The cursor positioned on the last row read, the next page being read from there.
+     */
+    Cursor getCursor() {
+        if (skippedRowCount > 0) {
+            cursor.moveToPosition(skippedRowCount - 1);
+            skippedRowCount = 0;
+        }
+        return cursor;
+    }
+
+    /**
+     * @return true if its pages are streamed and the last one was not sent yet
+     */
+    synchronized boolean markClosed() {
+        boolean streamEnded = !streaming || closed;
+        closed = true;
+        prefetchedResults = null;
+        return !streamEnded;
+    }
 }
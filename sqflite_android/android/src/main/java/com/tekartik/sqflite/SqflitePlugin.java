@@ -9,28 +9,39 @@ import static com.tekartik.sqflite.Constant.METHOD_DATABASE_EXISTS;
 import static com.tekartik.sqflite.Constant.METHOD_DEBUG;
 import static com.tekartik.sqflite.Constant.METHOD_DEBUG_MODE;
 import static com.tekartik.sqflite.Constant.METHOD_DELETE_DATABASE;
+import static com.tekartik.sqflite.Constant.METHOD_DELETE_RESULT_FILE;
 import static com.tekartik.sqflite.Constant.METHOD_EXECUTE;
+import static com.tekartik.sqflite.Constant.METHOD_EXECUTE_PREPARED;
+import static com.tekartik.sqflite.Constant.METHOD_FINALIZE;
 import static com.tekartik.sqflite.Constant.METHOD_GET_DATABASES_PATH;
 import static com.tekartik.sqflite.Constant.METHOD_GET_PLATFORM_VERSION;
 import static com.tekartik.sqflite.Constant.METHOD_INSERT;
+import static com.tekartik.sqflite.Constant.METHOD_INSERT_MANY;
 import static com.tekartik.sqflite.Constant.METHOD_OPEN_DATABASE;
 import static com.tekartik.sqflite.Constant.METHOD_OPTIONS;
+import static com.tekartik.sqflite.Constant.METHOD_PREPARE;
 import static com.tekartik.sqflite.Constant.METHOD_QUERY;
 import static com.tekartik.sqflite.Constant.METHOD_QUERY_CURSOR_NEXT;
+import static com.tekartik.sqflite.Constant.METHOD_QUERY_PREPARED;
+import static com.tekartik.sqflite.Constant.METHOD_QUERY_STREAM_CREDIT;
 import static com.tekartik.sqflite.Constant.METHOD_UPDATE;
 import static com.tekartik.sqflite.Constant.PARAM_CMD;
 import static com.tekartik.sqflite.Constant.PARAM_ID;
 import static com.tekartik.sqflite.Constant.PARAM_LOCALE;
 import static com.tekartik.sqflite.Constant.PARAM_LOG_LEVEL;
 import static com.tekartik.sqflite.Constant.PARAM_PATH;
+import static com.tekartik.sqflite.Constant.PARAM_PRIORITY;
 import static com.tekartik.sqflite.Constant.PARAM_READ_ONLY;
 import static com.tekartik.sqflite.Constant.PARAM_RECOVERED;
 import static com.tekartik.sqflite.Constant.PARAM_RECOVERED_IN_TRANSACTION;
 import static com.tekartik.sqflite.Constant.PARAM_SINGLE_INSTANCE;
+import static com.tekartik.sqflite.Constant.PRIORITY_NORMAL;
 import static com.tekartik.sqflite.Constant.TAG;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Process;
 import android.util.Log;
 
@@ -45,6 +56,7 @@ import java.util.Map;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
@@ -60,17 +72,49 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
     @SuppressLint("UseSparseArrays")
     static final Map<Integer, Database> databaseMap = new HashMap<>();
     static private final Object databaseMapLocker = new Object();
+    // Opens posted to the worker pool, not in databaseMap yet, guarded by databaseMapLocker
+    static private int openingDatabaseCount = 0;
     static private final Object openCloseLocker = new Object();
     static int logLevel = LogLevel.none;
     // local cache
     static String databasesPath;
     static private int THREAD_PRIORITY = Process.THREAD_PRIORITY_DEFAULT;
+    // Thread priority while running interactive tasks, null to keep THREAD_PRIORITY
+    static private Integer INTERACTIVE_THREAD_PRIORITY;
     static private int THREAD_COUNT = 1;
+    // Workers always running, null for THREAD_COUNT
+    static private Integer MIN_THREAD_COUNT;
+    // Delay after which an idle worker above MIN_THREAD_COUNT stops
+    static private long THREAD_IDLE_TIMEOUT = 10000;
+    // Read-only connections per database in WAL mode, 0 to disable
+    static private int READ_CONNECTION_COUNT = 0;
+    // Compiled statements kept per database, 0 (default) to disable
+    static private int STATEMENT_CACHE_SIZE = 0;
+    // Max size in bytes of the next cursor page read ahead, 0 to disable
+    static private int CURSOR_PREFETCH_SIZE = 0;
+    // Delay after which an unused cursor is closed, 0 to disable
+    static private long CURSOR_IDLE_TIMEOUT = 0;
+    // Opened cursors per database, the least recently used are closed first, 0 for no limit
+    static private int MAX_CURSOR_COUNT = 0;
+    // Idle cursor windows kept per database for reuse, 0 to disable
+    static private int CURSOR_WINDOW_POOL_SIZE = 0;
+    // Cursor window size in bytes (Android 9+), 0 for the platform default
+    static private long CURSOR_WINDOW_SIZE = 0;
+    // Max rows and estimated size in bytes of a query without cursor, 0 for no limit
+    static private int MAX_RESULT_ROWS = 0;
+    static private int MAX_RESULT_SIZE = 0;
     static private int databaseId = 0; // incremental database id
     // Database worker pool execution
     static private DatabaseWorkerPool databaseWorkerPool;
+    // Delay before stopping the worker pool once all databases are closed, 0 to stop right away
+    static private long WORKER_POOL_LINGER = 0;
+    // Stops the worker pool if no database was opened during WORKER_POOL_LINGER
+    static private final Runnable stopIdleWorkerPool = SqflitePlugin::stopIdleWorkerPool;
+    static private Handler mainHandler;
     private Context context;
     private MethodChannel methodChannel;
+    private EventChannel queryStreamChannel;
+    private QueryStreamHandler queryStreamHandler;
 
     // Needed public constructor
     public SqflitePlugin() {
@@ -149,6 +193,9 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
                 StandardMethodCodec.INSTANCE,
                 messenger.makeBackgroundTaskQueue());
         methodChannel.setMethodCallHandler(this);
+        queryStreamHandler = new QueryStreamHandler();
+        queryStreamChannel = new EventChannel(messenger, Constant.QUERY_STREAM_KEY);
+        queryStreamChannel.setStreamHandler(queryStreamHandler);
     }
 
     @Override
@@ -156,6 +203,8 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         context = null;
         methodChannel.setMethodCallHandler(null);
         methodChannel = null;
+        queryStreamChannel.setStreamHandler(null);
+        queryStreamChannel = null;
     }
 
     private Context getContext() {
@@ -166,6 +215,12 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         return databaseMap.get(databaseId);
     }
 
+    // Task priority (PRIORITY_XXX) of a database call
+    static int getTaskPriority(MethodCall call) {
+        Integer priority = call.argument(PARAM_PRIORITY);
+        return priority != null ? priority : PRIORITY_NORMAL;
+    }
+
     private Database getDatabaseOrError(MethodCall call, Result result) {
         int databaseId = call.argument(PARAM_ID);
         Database database = getDatabase(databaseId);
@@ -186,7 +241,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         if (database == null) {
             return;
         }
-        databaseWorkerPool.post(database, () -> {
+        databaseWorkerPool.postRead(database, getTaskPriority(call), () -> {
             MethodCallOperation operation = new MethodCallOperation(call, result);
             database.query(operation);
         });
@@ -200,12 +255,87 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         if (database == null) {
             return;
         }
-        databaseWorkerPool.post(database, () -> {
+        databaseWorkerPool.postRead(database, getTaskPriority(call), () -> {
             MethodCallOperation operation = new MethodCallOperation(call, result);
             database.queryCursorNext(operation);
         });
     }
 
+    //
+    // streamed cursor credit
+    //
+    private void onQueryStreamCreditCall(final MethodCall call, final Result result) {
+        final Database database = getDatabaseOrError(call, result);
+        if (database == null) {
+            return;
+        }
+        databaseWorkerPool.postRead(database, getTaskPriority(call), () -> {
+            MethodCallOperation operation = new MethodCallOperation(call, result);
+            database.queryStreamCredit(operation);
+        });
+    }
+
+    //
+    // Acknowledged result file
+    //
+    private void onDeleteResultFileCall(final MethodCall call, final Result result) {
+        final Database database = getDatabaseOrError(call, result);
+        if (database == null) {
+            return;
+        }
+        databaseWorkerPool.postRead(database, getTaskPriority(call), () -> {
+            MethodCallOperation operation = new MethodCallOperation(call, result);
+            database.deleteResultFile(operation);
+        });
+    }
+
+    //
+    // Prepared statements
+    //
+    private void onPrepareCall(final MethodCall call, final Result result) {
+        final Database database = getDatabaseOrError(call, result);
+        if (database == null) {
+            return;
+        }
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> {
+            MethodCallOperation operation = new MethodCallOperation(call, result);
+            database.prepare(operation);
+        });
+    }
+
+    private void onExecutePreparedCall(final MethodCall call, final Result result) {
+        final Database database = getDatabaseOrError(call, result);
+        if (database == null) {
+            return;
+        }
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> {
+            MethodCallOperation operation = new MethodCallOperation(call, result);
+            database.executePrepared(operation);
+        });
+    }
+
+    private void onQueryPreparedCall(final MethodCall call, final Result result) {
+        final Database database = getDatabaseOrError(call, result);
+        if (database == null) {
+            return;
+        }
+        databaseWorkerPool.postRead(database, getTaskPriority(call), () -> {
+            MethodCallOperation operation = new MethodCallOperation(call, result);
+            database.queryPrepared(operation);
+        });
+    }
+
+    private void onFinalizeCall(final MethodCall call, final Result result) {
+        final Database database = getDatabaseOrError(call, result);
+        if (database == null) {
+            return;
+        }
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> {
+            MethodCallOperation operation = new MethodCallOperation(call, result);
+            database.finalizePrepared(operation);
+        });
+    }
+
     //
     // Sqflite.batch
     //
@@ -215,7 +345,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         if (database == null) {
             return;
         }
-        databaseWorkerPool.post(database, () -> database.batch(call, result));
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> database.batch(call, result));
     }
 
     //
@@ -227,12 +357,27 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         if (database == null) {
             return;
         }
-        databaseWorkerPool.post(database, () -> {
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> {
             MethodCallOperation operation = new MethodCallOperation(call, result);
             database.insert(operation);
         });
     }
 
+    //
+    // Insert many rows using the same statement
+    //
+    private void onInsertManyCall(final MethodCall call, final Result result) {
+
+        final Database database = getDatabaseOrError(call, result);
+        if (database == null) {
+            return;
+        }
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> {
+            MethodCallOperation operation = new MethodCallOperation(call, result);
+            database.insertMany(operation);
+        });
+    }
+
     //
     // Sqflite.execute
     //
@@ -242,7 +387,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         if (database == null) {
             return;
         }
-        databaseWorkerPool.post(database, () -> {
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> {
             MethodCallOperation operation = new MethodCallOperation(call, result);
             database.execute(operation);
         });
@@ -254,7 +399,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         if (database == null) {
             return;
         }
-        databaseWorkerPool.post(database, () -> {
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> {
             String localeString = call.argument(PARAM_LOCALE);
             try {
                 database.sqliteDatabase.setLocale(Utils.localeForLanguageTag(localeString));
@@ -275,7 +420,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         if (database == null) {
             return;
         }
-        databaseWorkerPool.post(database, () -> {
+        databaseWorkerPool.post(database, getTaskPriority(call), () -> {
             MethodCallOperation operation = new MethodCallOperation(call, result);
             database.update(operation);
         });
@@ -301,6 +446,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
                     if (database.logLevel > LogLevel.none) {
                         info.put(PARAM_LOG_LEVEL, database.logLevel);
                     }
+                    database.putDebugInfo(info);
                     databasesInfo.put(entry.getKey().toString(), info);
 
                 }
@@ -364,6 +510,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
                             if (LogLevel.hasVerboseLevel(logLevel)) {
                                 Log.d(Constant.TAG, database.getThreadLogPrefix() + "re-opened single instance " + (database.isInTransaction() ? "(in transaction) " : "") + databaseId + " " + path);
                             }
+                            database.queryStreamHandler = queryStreamHandler;
                             result.success(makeOpenResult(databaseId, true, database.isInTransaction()));
                             return;
                         }
@@ -382,27 +529,46 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         final Database database = new Database(context, path, databaseId, singleInstance, logLevel);
 
         synchronized (databaseMapLocker) {
+            // Keep the lingering worker pool
+            if (mainHandler != null) {
+                mainHandler.removeCallbacks(stopIdleWorkerPool);
+            }
             // Create worker pool if necessary
             if (databaseWorkerPool == null) {
                 databaseWorkerPool = DatabaseWorkerPool.create(
-                        "Sqflite", THREAD_COUNT, SqflitePlugin.THREAD_PRIORITY);
+                        "Sqflite", getMinThreadCount(), THREAD_COUNT, THREAD_IDLE_TIMEOUT,
+                        SqflitePlugin.THREAD_PRIORITY, INTERACTIVE_THREAD_PRIORITY);
                 databaseWorkerPool.start();
                 if (LogLevel.hasSqlLevel(database.logLevel)) {
                     Log.d(TAG, database.getThreadLogPrefix() + "starting worker pool with priority " + SqflitePlugin.THREAD_PRIORITY);
                 }
             }
             database.databaseWorkerPool = databaseWorkerPool;
+            database.readConnectionCount = READ_CONNECTION_COUNT;
+            database.statementCacheSize = STATEMENT_CACHE_SIZE;
+            database.cursorPrefetchSize = CURSOR_PREFETCH_SIZE;
+            database.cursorIdleTimeout = CURSOR_IDLE_TIMEOUT;
+            database.maxCursorCount = MAX_CURSOR_COUNT;
+            database.cursorWindowPoolSize = CURSOR_WINDOW_POOL_SIZE;
+            database.cursorWindowSize = CURSOR_WINDOW_SIZE;
+            database.maxResultRows = MAX_RESULT_ROWS;
+            database.queryStreamHandler = queryStreamHandler;
+            database.maxResultSize = MAX_RESULT_SIZE;
             if (LogLevel.hasSqlLevel(database.logLevel)) {
                 Log.d(TAG, database.getThreadLogPrefix() + "opened " + databaseId + " " + path);
             }
 
 
+            // Keeps the worker pool until opened
+            openingDatabaseCount++;
             // Open in background thread
             databaseWorkerPool.post(
                     database,
+                    getTaskPriority(call),
                     () -> {
 
                         synchronized (openCloseLocker) {
+                            Database.purgeResultFiles(database.context);
 
                             if (!inMemory) {
                                 File file = new File(path);
@@ -410,6 +576,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
                                 if (!directory.exists()) {
                                     if (!directory.mkdirs()) {
                                         if (!directory.exists()) {
+                                            onOpenFailed();
                                             result.error(Constant.SQLITE_ERROR, Constant.ERROR_OPEN_FAILED + " " + path, null);
                                             return;
                                         }
@@ -425,6 +592,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
                                     database.open();
                                 }
                             } catch (Exception e) {
+                                onOpenFailed();
                                 MethodCallOperation operation = new MethodCallOperation(call, result);
                                 database.handleException(e, operation);
                                 return;
@@ -435,6 +603,7 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
                                     _singleInstancesByPath.put(path, databaseId);
                                 }
                                 databaseMap.put(databaseId, database);
+                                openingDatabaseCount--;
                             }
                             if (LogLevel.hasSqlLevel(database.logLevel)) {
                                 Log.d(TAG, database.getThreadLogPrefix() + "opened " + databaseId + " " + path);
@@ -563,9 +732,41 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         }
         synchronized (databaseMapLocker) {
 
-            if (databaseMap.isEmpty() && databaseWorkerPool != null) {
-                if (LogLevel.hasSqlLevel(database.logLevel)) {
-                    Log.d(TAG, database.getThreadLogPrefix() + "stopping thread");
+            if (isWorkerPoolUnused() && databaseWorkerPool != null) {
+                if (WORKER_POOL_LINGER > 0) {
+                    // Stopped later if no database is opened meanwhile
+                    if (mainHandler == null) {
+                        mainHandler = new Handler(Looper.getMainLooper());
+                    }
+                    mainHandler.removeCallbacks(stopIdleWorkerPool);
+                    mainHandler.postDelayed(stopIdleWorkerPool, WORKER_POOL_LINGER);
+                } else {
+                    if (LogLevel.hasSqlLevel(database.logLevel)) {
+                        Log.d(TAG, database.getThreadLogPrefix() + "stopping thread");
+                    }
+                    databaseWorkerPool.quit();
+                    databaseWorkerPool = null;
+                }
+            }
+        }
+    }
+
+    static private void onOpenFailed() {
+        synchronized (databaseMapLocker) {
+            openingDatabaseCount--;
+        }
+    }
+
+    // True if no database is opened nor being opened, must be called under databaseMapLocker
+    static private boolean isWorkerPoolUnused() {
+        return databaseMap.isEmpty() && openingDatabaseCount == 0;
+    }
+
+    static private void stopIdleWorkerPool() {
+        synchronized (databaseMapLocker) {
+            if (isWorkerPoolUnused() && databaseWorkerPool != null) {
+                if (LogLevel.hasSqlLevel(logLevel)) {
+                    Log.d(TAG, "stopping idle worker pool");
                 }
                 databaseWorkerPool.quit();
                 databaseWorkerPool = null;
@@ -593,6 +794,10 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
                 onInsertCall(call, result);
                 break;
             }
+            case METHOD_INSERT_MANY: {
+                onInsertManyCall(call, result);
+                break;
+            }
             case METHOD_UPDATE: {
                 onUpdateCall(call, result);
                 break;
@@ -629,10 +834,34 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
                 onQueryCursorNextCall(call, result);
                 break;
             }
+            case METHOD_QUERY_STREAM_CREDIT: {
+                onQueryStreamCreditCall(call, result);
+                break;
+            }
+            case METHOD_DELETE_RESULT_FILE: {
+                onDeleteResultFileCall(call, result);
+                break;
+            }
             case METHOD_DATABASE_EXISTS: {
                 onDatabaseExistsCall(call, result);
                 break;
             }
+            case METHOD_PREPARE: {
+                onPrepareCall(call, result);
+                break;
+            }
+            case METHOD_EXECUTE_PREPARED: {
+                onExecutePreparedCall(call, result);
+                break;
+            }
+            case METHOD_QUERY_PREPARED: {
+                onQueryPreparedCall(call, result);
+                break;
+            }
+            case METHOD_FINALIZE: {
+                onFinalizeCall(call, result);
+                break;
+            }
             // Obsolete
             case METHOD_DEBUG_MODE: {
                 onDebugModeCall(call, result);
@@ -653,15 +882,78 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         if (threadPriority != null) {
             THREAD_PRIORITY = (Integer) threadPriority;
         }
+        Object workerPoolLinger = call.argument(Constant.PARAM_WORKER_POOL_LINGER);
+        if (workerPoolLinger != null) {
+            WORKER_POOL_LINGER = ((Number) workerPoolLinger).longValue();
+        }
+        Object threadIdleTimeout = call.argument(Constant.PARAM_THREAD_IDLE_TIMEOUT);
+        if (threadIdleTimeout != null) {
+            // Applies to the next worker pool
+            THREAD_IDLE_TIMEOUT = ((Number) threadIdleTimeout).longValue();
+        }
+        boolean resize = false;
+        if (call.hasArgument(Constant.PARAM_MIN_THREAD_COUNT)) {
+            Integer minThreadCount = call.argument(Constant.PARAM_MIN_THREAD_COUNT);
+            resize = minThreadCount == null ? MIN_THREAD_COUNT != null : !minThreadCount.equals(MIN_THREAD_COUNT);
+            MIN_THREAD_COUNT = minThreadCount;
+        }
         Object threadCount = call.argument(Constant.PARAM_THREAD_COUNT);
         if (threadCount != null && !threadCount.equals(THREAD_COUNT)) {
             THREAD_COUNT = (Integer) threadCount;
-            // Reset databaseWorkerPool when THREAD_COUNT change.
-            if (databaseWorkerPool != null) {
-                databaseWorkerPool.quit();
-                databaseWorkerPool = null;
+            resize = true;
+        }
+        if (resize) {
+            // Resize databaseWorkerPool, or reset it when it cannot be resized and no database
+            // is using it, otherwise the change applies to the next worker pool.
+            synchronized (databaseMapLocker) {
+                if (databaseWorkerPool != null && !databaseWorkerPool.resize(getMinThreadCount(), THREAD_COUNT)
+                        && isWorkerPoolUnused()) {
+                    databaseWorkerPool.quit();
+                    databaseWorkerPool = null;
+                }
             }
         }
+        if (call.hasArgument(Constant.PARAM_INTERACTIVE_THREAD_PRIORITY)) {
+            // Applies to the next worker pool
+            INTERACTIVE_THREAD_PRIORITY = call.argument(Constant.PARAM_INTERACTIVE_THREAD_PRIORITY);
+        }
+        // Database options, applying to databases opened next
+        Object statementCacheSize = call.argument(Constant.PARAM_STATEMENT_CACHE_SIZE);
+        if (statementCacheSize != null) {
+            STATEMENT_CACHE_SIZE = (Integer) statementCacheSize;
+        }
+        Object cursorPrefetchSize = call.argument(Constant.PARAM_CURSOR_PREFETCH_SIZE);
+        if (cursorPrefetchSize != null) {
+            CURSOR_PREFETCH_SIZE = (Integer) cursorPrefetchSize;
+        }
+        Object cursorIdleTimeout = call.argument(Constant.PARAM_CURSOR_IDLE_TIMEOUT);
+        if (cursorIdleTimeout != null) {
+            CURSOR_IDLE_TIMEOUT = ((Number) cursorIdleTimeout).longValue();
+        }
+        Object maxCursorCount = call.argument(Constant.PARAM_MAX_CURSOR_COUNT);
+        if (maxCursorCount != null) {
+            MAX_CURSOR_COUNT = (Integer) maxCursorCount;
+        }
+        Object cursorWindowPoolSize = call.argument(Constant.PARAM_CURSOR_WINDOW_POOL_SIZE);
+        if (cursorWindowPoolSize != null) {
+            CURSOR_WINDOW_POOL_SIZE = (Integer) cursorWindowPoolSize;
+        }
+        Object cursorWindowSize = call.argument(Constant.PARAM_CURSOR_WINDOW_SIZE);
+        if (cursorWindowSize != null) {
+            CURSOR_WINDOW_SIZE = ((Number) cursorWindowSize).longValue();
+        }
+        Object maxResultRows = call.argument(Constant.PARAM_MAX_RESULT_ROWS);
+        if (maxResultRows != null) {
+            MAX_RESULT_ROWS = (Integer) maxResultRows;
+        }
+        Object maxResultSize = call.argument(Constant.PARAM_MAX_RESULT_SIZE);
+        if (maxResultSize != null) {
+            MAX_RESULT_SIZE = (Integer) maxResultSize;
+        }
+        Object readConnectionCount = call.argument(Constant.PARAM_READ_CONNECTION_COUNT);
+        if (readConnectionCount != null) {
+            READ_CONNECTION_COUNT = (Integer) readConnectionCount;
+        }
         Integer logLevel = LogLevel.getLogLevel(call);
         if (logLevel != null) {
             SqflitePlugin.logLevel = logLevel;
@@ -669,6 +961,10 @@ public class SqflitePlugin implements FlutterPlugin, MethodCallHandler {
         result.success(null);
     }
 
+    static private int getMinThreadCount() {
+        return MIN_THREAD_COUNT != null ? Math.min(MIN_THREAD_COUNT, THREAD_COUNT) : THREAD_COUNT;
+    }
+
     //private static class Database
 
     void onGetDatabasesPathCall(final MethodCall call, final Result result) {
@@ -0,0 +1,31 @@
+package com.tekartik.sqflite;
+
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Sqflite prepared statement
+ */
+public class SqflitePreparedStatement {
+    final int statementId;
+    // insert, update, execute or query
+    final String method;
+    final String sql;
+    // Compiled on the writer, null for queries
+    @Nullable
+    final SQLiteStatement statement;
+
+    public SqflitePreparedStatement(int statementId, String method, String sql, @Nullable SQLiteStatement statement) {
+        this.statementId = statementId;
+        this.method = method;
+        this.sql = sql;
+        this.statement = statement;
+    }
+
+    void close() {
+        if (statement != null) {
+            statement.close();
+        }
+    }
+}
@@ -2,18 +2,23 @@ package com.tekartik.sqflite;
 
 import android.database.sqlite.SQLiteProgram;
 
-import java.util.ArrayList;
+import androidx.annotation.Nullable;
+
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class SqlCommand {
     final private String sql;
     final private List<Object> rawArguments;
+    // Normalized arguments, blobs sent as list converted to byte[]
+    @Nullable
+    private Object[] sqlArguments;
 
     public SqlCommand(String sql, List<Object> rawArguments) {
         this.sql = sql;
         if (rawArguments == null) {
-            rawArguments = new ArrayList<>();
+            rawArguments = Collections.emptyList();
         }
         this.rawArguments = rawArguments;
     }
@@ -25,11 +30,11 @@ public class SqlCommand {
         } else {
             // Assume a list is a blob
             if (value instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<Integer> list = (List<Integer>) value;
-                byte[] blob = new byte[list.size()];
-                for (int i = 0; i < list.size(); i++) {
-                    blob[i] = (byte) (int) list.get(i);
+                List<?> list = (List<?>) value;
+                int size = list.size();
+                byte[] blob = new byte[size];
+                for (int i = 0; i < size; i++) {
+                    blob[i] = ((Number) list.get(i)).byteValue();
                 }
                 value = blob;
             }
@@ -41,54 +46,66 @@ public class SqlCommand {
         return sql;
     }
 
-    private Object[] getSqlArguments(List<Object> rawArguments) {
-        List<Object> fixedArguments = new ArrayList<>();
-        if (rawArguments != null) {
-            for (Object rawArgument : rawArguments) {
-                fixedArguments.add(toValue(rawArgument));
-            }
+    /**
+     * Bind the arguments, normalized once, to a query or a statement.
+     */
+    public void bindTo(SQLiteProgram program) {
+        Object[] arguments = getSqlArguments();
+        for (int i = 0; i < arguments.length; i++) {
+            // sqlite3 variables are 1-indexed
+            bindValue(program, i + 1, arguments[i]);
         }
-        return fixedArguments.toArray(new Object[0]);
     }
 
-    public void bindTo(SQLiteProgram statement) {
+    /**
+     * Bind raw arguments without creating a command, such as for each row of an insert many.
+     */
+    static void bindArguments(SQLiteProgram program, @Nullable List<Object> rawArguments) {
         if (rawArguments != null) {
             int count = rawArguments.size();
             for (int i = 0; i < count; i++) {
-                Object arg = toValue(rawArguments.get(i));
-                // sqlite3 variables are 1-indexed
-                int sqlIndex = i + 1;
-
-                if (arg == null) {
-                    statement.bindNull(sqlIndex);
-                } else if (arg instanceof byte[]) {
-                    statement.bindBlob(sqlIndex, (byte[]) arg);
-                } else if (arg instanceof Double) {
-                    statement.bindDouble(sqlIndex, (Double) arg);
-                } else if (arg instanceof Integer) {
-                    statement.bindLong(sqlIndex, (Integer) arg);
-                } else if (arg instanceof Long) {
-                    statement.bindLong(sqlIndex, (Long) arg);
-                } else if (arg instanceof String) {
-                    statement.bindString(sqlIndex, (String) arg);
-                } else if (arg instanceof Boolean) {
-                    statement.bindLong(sqlIndex, ((Boolean) arg) ? 1 : 0);
-                } else {
-                    throw new IllegalArgumentException("Could not bind " + arg + " from index "
-                            + i + ": Supported types are null, byte[], double, long, boolean and String");
-                }
+                bindValue(program, i + 1, toValue(rawArguments.get(i)));
             }
         }
     }
 
+    // Same type coverage as execSQL arguments (DatabaseUtils.bindObjectToProgram)
+    static private void bindValue(SQLiteProgram program, int index, Object value) {
+        if (value == null) {
+            program.bindNull(index);
+        } else if (value instanceof String) {
+            program.bindString(index, (String) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            program.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            program.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof byte[]) {
+            program.bindBlob(index, (byte[]) value);
+        } else if (value instanceof Number) {
+            program.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            program.bindLong(index, ((Boolean) value) ? 1 : 0);
+        } else {
+            program.bindString(index, value.toString());
+        }
+    }
+
     @Override
     public String toString() {
         return sql + ((rawArguments == null || rawArguments.isEmpty()) ? "" : (" " + rawArguments));
     }
 
-    // As expected by execSQL
+    // As expected by execSQL, computed once, must not be modified
     public Object[] getSqlArguments() {
-        return getSqlArguments(rawArguments);
+        if (sqlArguments == null) {
+            int count = rawArguments.size();
+            Object[] arguments = new Object[count];
+            for (int i = 0; i < count; i++) {
+                arguments[i] = toValue(rawArguments.get(i));
+            }
+            sqlArguments = arguments;
+        }
+        return sqlArguments;
     }
 
     public List<Object> getRawSqlArguments() {
@@ -14,6 +14,7 @@ import com.tekartik.sqflite.dev.Debug;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 
 public class Utils {
@@ -32,6 +33,56 @@ public class Utils {
         return list;
     }
 
+    /**
+     * Estimated memory size of a row value, in bytes.
+     */
+    static int valueSize(@Nullable Object value) {
+        if (value instanceof String) {
+            return ((String) value).length() * 2;
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        return 8;
+    }
+
+    /**
+     * Estimated size in bytes of query results, whatever their format.
+     */
+    static long resultsSize(@Nullable Object value) {
+        if (value instanceof Map) {
+            long size = 0;
+            for (Object item : ((Map<?, ?>) value).values()) {
+                size += resultsSize(item);
+            }
+            return size;
+        } else if (value instanceof List) {
+            long size = 0;
+            for (Object item : (List<?>) value) {
+                size += resultsSize(item);
+            }
+            return size;
+        } else if (value instanceof long[]) {
+            return ((long[]) value).length * 8L;
+        } else if (value instanceof double[]) {
+            return ((double[]) value).length * 8L;
+        } else if (value instanceof int[]) {
+            return ((int[]) value).length * 4L;
+        }
+        return valueSize(value);
+    }
+
+    /**
+     * Select query returning at most limit rows of the given one, trailing semicolons removed.
+     */
+    static String limitSql(String sql, int limit) {
+        int end = sql.length();
+        while (end > 0 && (Character.isWhitespace(sql.charAt(end - 1)) || sql.charAt(end - 1) == ';')) {
+            end--;
+        }
+        // New line ending a trailing comment
+        return "SELECT * FROM (" + sql.substring(0, end) + "\n) LIMIT " + limit;
+    }
+
     @Nullable
     private static String getString(Object value) {
         String type = null;
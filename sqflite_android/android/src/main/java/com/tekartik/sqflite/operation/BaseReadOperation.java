@@ -20,6 +20,10 @@ import java.util.List;
  */
 
 public abstract class BaseReadOperation implements Operation {
+    // Parsed once, also used to report errors
+    @Nullable
+    private SqlCommand sqlCommand;
+
     private String getSql() {
         return getArgument(PARAM_SQL);
     }
@@ -38,7 +42,15 @@ public abstract class BaseReadOperation implements Operation {
     }
 
     public SqlCommand getSqlCommand() {
-        return new SqlCommand(getSql(), getSqlArguments());
+        if (sqlCommand == null) {
+            sqlCommand = new SqlCommand(getSql(), getSqlArguments());
+        }
+        return sqlCommand;
+    }
+
+    // When the operation is reused for other arguments
+    void clearSqlCommand() {
+        sqlCommand = null;
     }
 
     public Boolean getInTransactionChange() {
@@ -7,6 +7,7 @@ import static com.tekartik.sqflite.Constant.PARAM_ERROR_MESSAGE;
 import static com.tekartik.sqflite.Constant.PARAM_METHOD;
 import static com.tekartik.sqflite.Constant.PARAM_RESULT;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,10 +16,12 @@ import io.flutter.plugin.common.MethodChannel;
 
 /**
  * Created by alex on 09/01/18.
+ * <p>
+ * A single instance can be reused for all the operations of a batch, see {@link #reset(Map)}.
  */
 
 public class BatchOperation extends BaseOperation {
-    final Map<String, Object> map;
+    Map<String, Object> map;
     final BatchOperationResult operationResult = new BatchOperationResult();
     final boolean noResult;
 
@@ -27,6 +30,19 @@ public class BatchOperation extends BaseOperation {
         this.noResult = noResult;
     }
 
+    public BatchOperation(boolean noResult) {
+        this(Collections.emptyMap(), noResult);
+    }
+
+    /**
+     * Reuse the operation for the next batch operation.
+     */
+    public void reset(Map<String, Object> map) {
+        this.map = map;
+        operationResult.clear();
+        clearSqlCommand();
+    }
+
     @Override
     public String getMethod() {
         return (String) map.get(PARAM_METHOD);
@@ -49,19 +65,15 @@ public class BatchOperation extends BaseOperation {
     }
 
     public Map<String, Object> getOperationSuccessResult() {
-        Map<String, Object> results = new HashMap<>();
-        results.put(PARAM_RESULT, operationResult.result);
-        return results;
+        return Collections.singletonMap(PARAM_RESULT, operationResult.result);
     }
 
     public Map<String, Object> getOperationError() {
-        Map<String, Object> error = new HashMap<>();
-        Map<String, Object> errorDetail = new HashMap<>();
+        Map<String, Object> errorDetail = new HashMap<>(4);
         errorDetail.put(PARAM_ERROR_CODE, operationResult.errorCode);
         errorDetail.put(PARAM_ERROR_MESSAGE, operationResult.errorMessage);
         errorDetail.put(PARAM_ERROR_DATA, operationResult.errorData);
-        error.put(PARAM_ERROR, errorDetail);
-        return error;
+        return Collections.singletonMap(PARAM_ERROR, errorDetail);
     }
 
     public void handleError(MethodChannel.Result result) {
@@ -105,6 +117,13 @@ public class BatchOperation extends BaseOperation {
             this.errorMessage = errorMessage;
             this.errorData = data;
         }
+
+        void clear() {
+            result = null;
+            errorCode = null;
+            errorMessage = null;
+            errorData = null;
+        }
     }
 
 
@@ -8,12 +8,12 @@ import io.flutter.plugin.common.MethodChannel;
  */
 
 public class MethodCallOperation extends BaseOperation {
-    private final Result result;
+    private final MethodChannel.Result result;
     final MethodCall methodCall;
 
     public MethodCallOperation(MethodCall methodCall, MethodChannel.Result result) {
         this.methodCall = methodCall;
-        this.result = new Result(result);
+        this.result = result;
     }
 
     @Override
@@ -31,29 +31,20 @@ public class MethodCallOperation extends BaseOperation {
         return methodCall.hasArgument(key);
     }
 
+    // Answers directly, without wrapping the method channel result
     @Override
     public OperationResult getOperationResult() {
-        return result;
+        return this;
     }
 
-    static class Result implements OperationResult {
-
-        final MethodChannel.Result result;
-
-        Result(MethodChannel.Result result) {
-            this.result = result;
-        }
-
-        @Override
-        public void success(Object result) {
-            this.result.success(result);
-        }
-
-        @Override
-        public void error(String errorCode, String errorMessage, Object data) {
-            result.error(errorCode, errorMessage, data);
-        }
+    @Override
+    public void success(Object result) {
+        this.result.success(result);
+    }
 
+    @Override
+    public void error(String errorCode, String errorMessage, Object data) {
+        result.error(errorCode, errorMessage, data);
     }
 
 
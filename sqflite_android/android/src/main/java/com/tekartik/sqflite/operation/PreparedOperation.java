@@ -0,0 +1,40 @@
+package com.tekartik.sqflite.operation;
+
+import static com.tekartik.sqflite.Constant.PARAM_SQL;
+
+/**
+ * Operation on a prepared statement, the sql is not sent again
+ */
+public class PreparedOperation extends BaseOperation {
+    final Operation operation;
+    final String sql;
+
+    public PreparedOperation(Operation operation, String sql) {
+        this.operation = operation;
+        this.sql = sql;
+    }
+
+    @Override
+    public String getMethod() {
+        return operation.getMethod();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T getArgument(String key) {
+        if (PARAM_SQL.equals(key)) {
+            return (T) sql;
+        }
+        return operation.getArgument(key);
+    }
+
+    @Override
+    public boolean hasArgument(String key) {
+        return PARAM_SQL.equals(key) || operation.hasArgument(key);
+    }
+
+    @Override
+    public OperationResult getOperationResult() {
+        return operation;
+    }
+}
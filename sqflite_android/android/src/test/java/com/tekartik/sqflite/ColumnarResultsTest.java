@@ -0,0 +1,161 @@
+package com.tekartik.sqflite;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import android.database.Cursor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar results test
+ */
+public class ColumnarResultsTest {
+
+    @Test
+    public void primitiveColumns() {
+        // Arrange
+        ColumnarResults results = new ColumnarResults(new String[]{"i", "d"}, 2);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            results.getColumn(0).addLong(i);
+            results.getColumn(1).addDouble(i + 0.5);
+            results.endRow();
+        }
+
+        // Assert
+        assertEquals(3, results.getRowCount());
+        assertArrayEquals(new long[]{0, 1, 2}, (long[]) results.getColumn(0).getValues());
+        assertArrayEquals(new double[]{0.5, 1.5, 2.5}, (double[]) results.getColumn(1).getValues(), 0);
+        assertNull(results.getColumn(0).getNulls());
+        assertNull(results.getColumn(1).getNulls());
+    }
+
+    @Test
+    public void nullBitmap() {
+        // Arrange
+        ColumnarResults.Column column = new ColumnarResults.Column(1);
+
+        // Act
+        column.addNull();
+        for (int i = 1; i < 10; i++) {
+            column.addLong(i);
+        }
+        column.addNull();
+
+        // Assert
+        assertEquals(Cursor.FIELD_TYPE_INTEGER, column.type);
+        assertArrayEquals(new long[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 0}, (long[]) column.getValues());
+        assertArrayEquals(new byte[]{1, 4}, column.getNulls());
+    }
+
+    @Test
+    public void objectColumns() {
+        // Arrange
+        ColumnarResults.Column strings = new ColumnarResults.Column(4);
+        ColumnarResults.Column blobs = new ColumnarResults.Column(4);
+        ColumnarResults.Column nulls = new ColumnarResults.Column(4);
+        byte[] blob = new byte[]{1, 2};
+
+        // Act
+        strings.addNull();
+        strings.addObject(Cursor.FIELD_TYPE_STRING, "a");
+        blobs.addObject(Cursor.FIELD_TYPE_BLOB, blob);
+        blobs.addNull();
+        nulls.addNull();
+        nulls.addNull();
+
+        // Assert
+        assertEquals(Arrays.asList(null, "a"), strings.getValues());
+        assertArrayEquals(new byte[]{1}, strings.getNulls());
+        assertEquals(Arrays.asList(blob, null), blobs.getValues());
+        assertArrayEquals(new byte[]{2}, blobs.getNulls());
+        assertNull(nulls.getValues());
+        assertArrayEquals(new byte[]{3}, nulls.getNulls());
+    }
+
+    @Test
+    public void mixedColumn() {
+        // Arrange
+        ColumnarResults.Column column = new ColumnarResults.Column(2);
+
+        // Act
+        column.addLong(1);
+        column.addNull();
+        column.addDouble(2.5);
+        column.addObject(Cursor.FIELD_TYPE_STRING, "a");
+
+        // Assert
+        assertEquals(ColumnarResults.FIELD_TYPE_MIXED, column.type);
+        assertEquals(Arrays.asList(1L, null, 2.5, "a"), column.getValues());
+        assertArrayEquals(new byte[]{2}, column.getNulls());
+    }
+
+    @Test
+    public void stringDictionary() {
+        // Arrange
+        ColumnarResults results = new ColumnarResults(new String[]{"status", "type"}, 2, true);
+        String[] statuses = new String[]{"open", null, "closed", "open"};
+
+        // Act
+        for (String status : statuses) {
+            if (status == null) {
+                results.getColumn(0).addNull();
+            } else {
+                results.getColumn(0).addObject(Cursor.FIELD_TYPE_STRING, status);
+            }
+            results.getColumn(1).addObject(Cursor.FIELD_TYPE_STRING, "open");
+            results.endRow();
+        }
+        Map<String, Object> map = results.toMap(true);
+
+        // Assert
+        assertEquals(Arrays.asList("open", "closed"), map.get(Constant.PARAM_STRINGS));
+        assertArrayEquals(new int[]{0, 0, 1, 0}, (int[]) results.getColumn(0).getValues());
+        assertArrayEquals(new byte[]{2}, results.getColumn(0).getNulls());
+        assertArrayEquals(new int[]{0, 0, 0, 0}, (int[]) results.getColumn(1).getValues());
+    }
+
+    @Test
+    public void stringDictionaryMixedColumn() {
+        // Arrange
+        ColumnarResults.StringDictionary dictionary = new ColumnarResults.StringDictionary();
+        ColumnarResults.Column column = new ColumnarResults.Column(2, dictionary);
+
+        // Act
+        column.addObject(Cursor.FIELD_TYPE_STRING, "a");
+        column.addNull();
+        column.addLong(1);
+
+        // Assert
+        assertEquals(ColumnarResults.FIELD_TYPE_MIXED, column.type);
+        assertEquals(Arrays.asList("a", null, 1L), column.getValues());
+    }
+
+    @Test
+    public void toMap() {
+        // Arrange
+        ColumnarResults results = new ColumnarResults(new String[]{"i"}, 0);
+        results.getColumn(0).addLong(1);
+        results.endRow();
+
+        // Act
+        Map<String, Object> map = results.toMap(true);
+        Map<String, Object> mapWithoutColumns = results.toMap(false);
+
+        // Assert
+        assertEquals(Arrays.asList("i"), map.get(Constant.PARAM_COLUMNS));
+        assertFalse(mapWithoutColumns.containsKey(Constant.PARAM_COLUMNS));
+        assertEquals(1, map.get(Constant.PARAM_ROW_COUNT));
+        List<?> values = (List<?>) map.get(Constant.PARAM_COLUMN_VALUES);
+        assertArrayEquals(new long[]{1}, (long[]) values.get(0));
+        assertEquals(Arrays.asList((Object) null), map.get(Constant.PARAM_COLUMN_NULLS));
+    }
+}
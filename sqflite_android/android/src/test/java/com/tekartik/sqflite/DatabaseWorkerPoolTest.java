@@ -1,6 +1,7 @@
 package com.tekartik.sqflite;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.After;
 import org.junit.Before;
@@ -10,9 +11,8 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Queue;
-import java.util.Set;
 
 public class DatabaseWorkerPoolTest {
 
@@ -126,12 +126,350 @@ public class DatabaseWorkerPoolTest {
         assertEquals(Arrays.asList(task3), new ArrayList<>(worker1.tasks));
         assertEquals(Collections.emptyList(), new ArrayList<>(worker2.tasks));
     }
+
+    @Test
+    public void workerInTransactionRunsOtherDatabases() {
+        // Arrange. Worker1 runs a task in transaction, worker2 is busy.
+        database1.inTransaction = true;
+        DatabaseTask task1 = new DatabaseTask(database1, () -> {
+        });
+        DatabaseTask task2 = new DatabaseTask(database2, () -> {
+        });
+        pool.post(task1);
+        pool.post(task2);
+        worker1.work();
+
+        // Act. Post a task of another database, then one in the transaction.
+        DatabaseTask task3 = new DatabaseTask(new FakeDatabase(3), () -> {
+        });
+        DatabaseTask task4 = new DatabaseTask(database1, () -> {
+        });
+        pool.post(task3);
+        pool.post(task4);
+
+        // Assert. Worker1 (the only idle one) run task3, task4 waits for worker1.
+        assertEquals(Arrays.asList(task3), new ArrayList<>(worker1.tasks));
+        assertEquals(Arrays.asList(task2), new ArrayList<>(worker2.tasks));
+
+        // Act. Worker2 finished task2.
+        worker2.work();
+
+        // Assert. Worker2 is not eligible for task4.
+        assertEquals(Collections.emptyList(), new ArrayList<>(worker2.tasks));
+
+        // Act. Worker1 finished task3.
+        worker1.work();
+
+        // Assert. Worker1 run task4.
+        assertEquals(Arrays.asList(task4), new ArrayList<>(worker1.tasks));
+        assertEquals(Collections.emptyList(), new ArrayList<>(worker2.tasks));
+    }
+
+    @Test
+    public void readTasksRunSimultaneously() {
+        // Arrange.
+        database1.readConcurrently = true;
+        DatabaseTask task1 = new DatabaseTask(database1, true, () -> {
+        });
+        DatabaseTask task2 = new DatabaseTask(database1, true, () -> {
+        });
+        DatabaseTask task3 = new DatabaseTask(database1, () -> {
+        });
+        DatabaseTask task4 = new DatabaseTask(database1, true, () -> {
+        });
+
+        // Act. Posting two reads, a write and a read.
+        pool.post(task1);
+        pool.post(task2);
+        pool.post(task3);
+        pool.post(task4);
+
+        // Assert. Both reads run, the write waits for a worker.
+        assertEquals(Arrays.asList(task1), new ArrayList<>(worker1.tasks));
+        assertEquals(Arrays.asList(task2), new ArrayList<>(worker2.tasks));
+
+        // Act. One read finished.
+        worker1.work();
+
+        // Assert. The write runs along the other read.
+        assertEquals(Arrays.asList(task3), new ArrayList<>(worker1.tasks));
+
+        // Act. The other read finished.
+        worker2.work();
+
+        // Assert. The last read runs along the write.
+        assertEquals(Arrays.asList(task3), new ArrayList<>(worker1.tasks));
+        assertEquals(Arrays.asList(task4), new ArrayList<>(worker2.tasks));
+    }
+
+    @Test
+    public void readTasksRunBeforePendingWrites() {
+        // Arrange.
+        database1.readConcurrently = true;
+        DatabaseTask task1 = new DatabaseTask(database1, () -> {
+        });
+        DatabaseTask task2 = new DatabaseTask(database1, () -> {
+        });
+        DatabaseTask task3 = new DatabaseTask(database1, true, () -> {
+        });
+
+        // Act. Posting two writes and a read.
+        pool.post(task1);
+        pool.post(task2);
+        pool.post(task3);
+
+        // Assert. The read runs along the first write, the second write waits.
+        assertEquals(Arrays.asList(task1), new ArrayList<>(worker1.tasks));
+        assertEquals(Arrays.asList(task3), new ArrayList<>(worker2.tasks));
+
+        // Act. The read finished.
+        worker2.work();
+
+        // Assert. The second write still waits for the first one.
+        assertEquals(Collections.emptyList(), new ArrayList<>(worker2.tasks));
+
+        // Act. The first write finished.
+        worker1.work();
+
+        // Assert. The second write runs on the first idle worker.
+        assertEquals(Collections.emptyList(), new ArrayList<>(worker1.tasks));
+        assertEquals(Arrays.asList(task2), new ArrayList<>(worker2.tasks));
+    }
+
+    @Test
+    public void readTasksWaitForTransaction() {
+        // Arrange. Reads are not concurrent within a transaction.
+        database1.inTransaction = true;
+        DatabaseTask task1 = new DatabaseTask(database1, () -> {
+        });
+        DatabaseTask task2 = new DatabaseTask(database1, true, () -> {
+        });
+
+        // Act. Posting a write and a read.
+        pool.post(task1);
+        pool.post(task2);
+
+        // Assert. The read waits.
+        assertEquals(Arrays.asList(task1), new ArrayList<>(worker1.tasks));
+        assertEquals(Collections.emptyList(), new ArrayList<>(worker2.tasks));
+
+        // Act. The write finished.
+        worker1.work();
+
+        // Assert. The read runs on the worker owning the transaction.
+        assertEquals(Arrays.asList(task2), new ArrayList<>(worker1.tasks));
+    }
+
+    @Test
+    public void readTasksRunFIFOWithoutReadConnections() {
+        // Arrange.
+        DatabaseTask task1 = new DatabaseTask(database1, true, () -> {
+        });
+        DatabaseTask task2 = new DatabaseTask(database1, true, () -> {
+        });
+
+        // Act. Posting two reads.
+        pool.post(task1);
+        pool.post(task2);
+
+        // Assert. The second read waits.
+        assertEquals(Arrays.asList(task1), new ArrayList<>(worker1.tasks));
+        assertEquals(Collections.emptyList(), new ArrayList<>(worker2.tasks));
+    }
+
+    @Test
+    public void higherPriorityTasksRunFirst() {
+        // Arrange. Both workers busy.
+        pool.post(new DatabaseTask(database1, () -> {
+        }));
+        pool.post(new DatabaseTask(database2, () -> {
+        }));
+        DatabaseTask task1 = new DatabaseTask(new FakeDatabase(3), false, Constant.PRIORITY_BACKGROUND, () -> {
+        });
+        DatabaseTask task2 = new DatabaseTask(new FakeDatabase(4), () -> {
+        });
+        DatabaseTask task3 = new DatabaseTask(new FakeDatabase(5), false, Constant.PRIORITY_INTERACTIVE, () -> {
+        });
+
+        // Act. Post a background, a normal and an interactive task, then free the workers.
+        pool.post(task1);
+        pool.post(task2);
+        pool.post(task3);
+        worker1.work();
+        worker2.work();
+
+        // Assert. Interactive and normal tasks run first.
+        assertEquals(Arrays.asList(task3), new ArrayList<>(worker1.tasks));
+        assertEquals(Arrays.asList(task2), new ArrayList<>(worker2.tasks));
+
+        // Act. Free a worker.
+        worker1.work();
+
+        // Assert. The background task runs last.
+        assertEquals(Arrays.asList(task1), new ArrayList<>(worker1.tasks));
+    }
+
+    @Test
+    public void priorityKeepsOneDBFIFO() {
+        // Arrange. Both workers busy.
+        pool.post(new DatabaseTask(database1, () -> {
+        }));
+        pool.post(new DatabaseTask(database2, () -> {
+        }));
+        FakeDatabase database3 = new FakeDatabase(3);
+        DatabaseTask task1 = new DatabaseTask(new FakeDatabase(4), () -> {
+        });
+        DatabaseTask task2 = new DatabaseTask(database3, false, Constant.PRIORITY_BACKGROUND, () -> {
+        });
+        DatabaseTask task3 = new DatabaseTask(database3, false, Constant.PRIORITY_INTERACTIVE, () -> {
+        });
+
+        // Act. Post a normal task, then a background and an interactive task on the same database.
+        pool.post(task1);
+        pool.post(task2);
+        pool.post(task3);
+        worker1.work();
+
+        // Assert. The background task runs first, before the interactive one on its database.
+        assertEquals(Arrays.asList(task2), new ArrayList<>(worker1.tasks));
+
+        // Act.
+        worker2.work();
+        worker1.work();
+
+        // Assert.
+        assertEquals(Arrays.asList(task3), new ArrayList<>(worker1.tasks));
+        assertEquals(Arrays.asList(task1), new ArrayList<>(worker2.tasks));
+    }
+
+    @Test
+    public void elasticPoolStartsWorkersOnDemand() {
+        // Arrange. No worker until needed.
+        FakeDatabaseWorkerPool elasticPool = new FakeDatabaseWorkerPool("elastic", 0, 2, 1000);
+        elasticPool.start();
+        assertEquals(0, elasticPool.getWorkerCount());
+
+        // Act. Post tasks on three databases.
+        elasticPool.post(new DatabaseTask(database1, () -> {
+        }));
+        assertEquals(1, elasticPool.getWorkerCount());
+        elasticPool.post(new DatabaseTask(database1, () -> {
+        }));
+        assertEquals(1, elasticPool.getWorkerCount());
+        elasticPool.post(new DatabaseTask(database2, () -> {
+        }));
+        elasticPool.post(new DatabaseTask(new FakeDatabase(3), () -> {
+        }));
+
+        // Assert. No more than 2 workers.
+        assertEquals(2, elasticPool.getWorkerCount());
+        elasticPool.quit();
+    }
+
+    @Test
+    public void elasticPoolRetiresIdleWorkers() {
+        // Arrange. Two busy workers.
+        FakeDatabaseWorkerPool elasticPool = new FakeDatabaseWorkerPool("elastic", 1, 2, 1000);
+        elasticPool.start();
+        elasticPool.post(new DatabaseTask(database1, () -> {
+        }));
+        elasticPool.post(new DatabaseTask(database2, () -> {
+        }));
+        FakeDatabaseWorker elasticWorker1 = elasticPool.getWorker(0);
+        FakeDatabaseWorker elasticWorker2 = elasticPool.getWorker(1);
+
+        // Act. Both workers become idle, worker1 becomes busy again.
+        elasticWorker1.work();
+        elasticWorker2.work();
+        elasticPool.post(new DatabaseTask(database1, () -> {
+        }));
+
+        // Assert. Busy worker1 does not stop.
+        elasticWorker1.idleTimeout();
+        assertEquals(2, elasticPool.getWorkerCount());
+
+        // Act. Idle timeout of worker2.
+        elasticWorker2.idleTimeout();
+
+        // Assert. Worker2 stopped, worker1 is kept as the minimum.
+        assertEquals(1, elasticPool.getWorkerCount());
+        elasticWorker1.work();
+        elasticWorker1.idleTimeout();
+        assertEquals(1, elasticPool.getWorkerCount());
+        elasticPool.quit();
+    }
+
+    @Test
+    public void resize() {
+        // Act. Grow the pool.
+        assertTrue(pool.resize(3, 3));
+
+        // Assert. A new worker started.
+        assertEquals(3, pool.getWorkerCount());
+
+        // Act. Shrink the pool.
+        assertTrue(pool.resize(1, 2));
+
+        // Assert. Idle workers stopped.
+        assertEquals(2, pool.getWorkerCount());
+
+        // Act. Down to a single worker and up again.
+        assertTrue(pool.resize(1, 1));
+        assertEquals(1, pool.getWorkerCount());
+        assertTrue(pool.resize(2, 2));
+
+        // Assert. Still usable.
+        assertEquals(2, pool.getWorkerCount());
+        List<Integer> done = new ArrayList<>();
+        pool.post(new DatabaseTask(database1, () -> done.add(1)));
+        for (FakeDatabaseWorker worker : pool.workers) {
+            while (!worker.tasks.isEmpty()) {
+                worker.work();
+            }
+        }
+        assertEquals(Arrays.asList(1), done);
+    }
+
+    @Test
+    public void manyTasksOfOneDBRunFIFO() {
+        // Arrange. Post many tasks on two databases.
+        List<Integer> done = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final int index = i;
+            pool.post(new DatabaseTask(i % 2 == 0 ? database1 : database2, () -> done.add(index)));
+        }
+
+        // Act. Let the workers run all the tasks.
+        while (!worker1.tasks.isEmpty() || !worker2.tasks.isEmpty()) {
+            if (!worker1.tasks.isEmpty()) {
+                worker1.work();
+            }
+            if (!worker2.tasks.isEmpty()) {
+                worker2.work();
+            }
+        }
+
+        // Assert. All tasks run, tasks of one database in order.
+        assertEquals(100, done.size());
+        int last1 = -2;
+        int last2 = -1;
+        for (int index : done) {
+            if (index % 2 == 0) {
+                assertEquals(last1 + 2, index);
+                last1 = index;
+            } else {
+                assertEquals(last2 + 2, index);
+                last2 = index;
+            }
+        }
+    }
 }
 
 class FakeDatabase implements DatabaseDelegate {
 
     final int databaseId;
     boolean inTransaction;
+    boolean readConcurrently;
 
     FakeDatabase(int databaseId) {
         this.databaseId = databaseId;
@@ -146,11 +484,17 @@ class FakeDatabase implements DatabaseDelegate {
     public boolean isInTransaction() {
         return inTransaction;
     }
+
+    @Override
+    public boolean canReadConcurrently() {
+        return readConcurrently;
+    }
 }
 
 class FakeDatabaseWorker extends DatabaseWorker {
 
     Queue<DatabaseTask> tasks = new ArrayDeque<>();
+    Queue<Runnable> delayed = new ArrayDeque<>();
 
     FakeDatabaseWorker(String name, int priority) {
         super(name, priority);
@@ -170,20 +514,36 @@ class FakeDatabaseWorker extends DatabaseWorker {
         tasks.add(task);
     }
 
+    @Override
+    void postDelayed(Runnable runnable, long delayMillis) {
+        delayed.add(runnable);
+    }
+
     void work() {
         DatabaseTask task = tasks.remove();
         super.work(task);
     }
+
+    // Run the pending delayed runnables
+    void idleTimeout() {
+        while (!delayed.isEmpty()) {
+            delayed.remove().run();
+        }
+    }
 }
 
 class FakeDatabaseWorkerPool extends DatabaseWorkerPoolImpl {
 
-    final Set<FakeDatabaseWorker> workers = new HashSet<>();
+    final List<FakeDatabaseWorker> workers = new ArrayList<>();
 
     FakeDatabaseWorkerPool(String name, int numberOfWorkers, int priority) {
         super(name, numberOfWorkers, priority);
     }
 
+    FakeDatabaseWorkerPool(String name, int minWorkers, int maxWorkers, long idleTimeoutMillis) {
+        super(name, minWorkers, maxWorkers, idleTimeoutMillis, 0, null);
+    }
+
     @Override
     protected DatabaseWorker createWorker(String name, int priority) {
         FakeDatabaseWorker worker = new FakeDatabaseWorker(name, priority);
@@ -192,6 +552,6 @@ class FakeDatabaseWorkerPool extends DatabaseWorkerPoolImpl {
     }
 
     FakeDatabaseWorker getWorker(int idx) {
-        return new ArrayList<>(workers).get(idx);
+        return workers.get(idx);
     }
 }
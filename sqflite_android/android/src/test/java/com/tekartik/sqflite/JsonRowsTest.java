@@ -0,0 +1,129 @@
+package com.tekartik.sqflite;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * JSON rows test
+ */
+public class JsonRowsTest {
+
+    private static String toJson(JsonRows rows) {
+        return new String(rows.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void empty() {
+        // Arrange
+        JsonRows rows = new JsonRows(new String[]{"a"});
+
+        // Act
+        String json = toJson(rows);
+
+        // Assert
+        assertEquals("[]", json);
+    }
+
+    @Test
+    public void storageClasses() {
+        // Arrange
+        JsonRows rows = new JsonRows(new String[]{"null", "integer", "float", "text"});
+
+        // Act
+        rows.putNull();
+        rows.putLong(-12);
+        rows.putDouble(1.5);
+        rows.putString("a");
+        rows.endRow();
+        rows.putNull();
+        rows.putLong(Long.MIN_VALUE);
+        rows.putDouble(1e-5);
+        rows.putString("");
+        rows.endRow();
+        String json = toJson(rows);
+
+        // Assert
+        assertEquals("[{\"null\":null,\"integer\":-12,\"float\":1.5,\"text\":\"a\"},"
+                + "{\"null\":null,\"integer\":-9223372036854775808,\"float\":1.0E-5,\"text\":\"\"}]", json);
+    }
+
+    @Test
+    public void nonFiniteDoubles() {
+        // Arrange
+        JsonRows rows = new JsonRows(new String[]{"d"});
+
+        // Act
+        rows.putDouble(Double.NaN);
+        rows.endRow();
+        rows.putDouble(Double.POSITIVE_INFINITY);
+        rows.endRow();
+        String json = toJson(rows);
+
+        // Assert
+        assertEquals("[{\"d\":null},{\"d\":null}]", json);
+    }
+
+    @Test
+    public void blobs() {
+        // Arrange
+        JsonRows rows = new JsonRows(new String[]{"b"});
+
+        // Act
+        rows.putBlob(new byte[0]);
+        rows.endRow();
+        rows.putBlob(new byte[]{'f'});
+        rows.endRow();
+        rows.putBlob(new byte[]{'f', 'o'});
+        rows.endRow();
+        rows.putBlob(new byte[]{'f', 'o', 'o', -1});
+        rows.endRow();
+        String json = toJson(rows);
+
+        // Assert
+        assertEquals("[{\"b\":\"\"},{\"b\":\"Zg==\"},{\"b\":\"Zm8=\"},{\"b\":\"Zm9v/w==\"}]", json);
+    }
+
+    @Test
+    public void flushToFile() throws Exception {
+        // Arrange
+        File file = File.createTempFile("rows", ".json");
+        JsonRows rows = new JsonRows(new String[]{"id"}, 0);
+
+        // Act
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            for (int i = 0; i < 3; i++) {
+                rows.putLong(i);
+                rows.endRow();
+                rows.flushTo(channel);
+            }
+            rows.finishTo(channel);
+        }
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        file.delete();
+
+        // Assert
+        assertEquals("[{\"id\":0},{\"id\":1},{\"id\":2}]", json);
+    }
+
+    @Test
+    public void escapedStrings() {
+        // Arrange
+        JsonRows rows = new JsonRows(new String[]{"\"key\""}, 0);
+
+        // Act
+        rows.putString("a\"b\\c\n\t\u0001é世😀\uD800");
+        rows.endRow();
+        String json = toJson(rows);
+
+        // Assert
+        assertEquals("[{\"\\\"key\\\"\":\"a\\\"b\\\\c\\n\\t\\u0001é世😀\\ud800\"}]", json);
+    }
+}
@@ -0,0 +1,173 @@
+package com.tekartik.sqflite;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.database.Cursor;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packed rows test, decoding follows the format described in PackedRows
+ */
+public class PackedRowsTest {
+
+    static class Decoded {
+        List<String> columns = new ArrayList<>();
+        List<List<Object>> rows = new ArrayList<>();
+    }
+
+    static Decoded decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(PackedRows.VERSION, buffer.get());
+        Decoded decoded = new Decoded();
+        int columnCount = buffer.getInt();
+        for (int i = 0; i < columnCount; i++) {
+            decoded.columns.add(new String(getBytes(buffer), StandardCharsets.UTF_8));
+        }
+        int rowCount = buffer.getInt();
+        for (int r = 0; r < rowCount; r++) {
+            List<Object> row = new ArrayList<>();
+            for (int i = 0; i < columnCount; i++) {
+                int type = buffer.get();
+                switch (type) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        row.add(null);
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row.add(buffer.getLong());
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row.add(buffer.getDouble());
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        row.add(new String(getBytes(buffer), StandardCharsets.UTF_8));
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        row.add(getBytes(buffer));
+                        break;
+                    default:
+                        throw new IllegalStateException("Invalid type " + type);
+                }
+            }
+            decoded.rows.add(row);
+        }
+        assertEquals(0, buffer.remaining());
+        return decoded;
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void empty() {
+        // Arrange
+        PackedRows rows = new PackedRows(new String[]{"a", "é"});
+
+        // Act
+        Decoded decoded = decode(rows.toByteArray());
+
+        // Assert
+        assertEquals(Arrays.asList("a", "é"), decoded.columns);
+        assertEquals(0, decoded.rows.size());
+    }
+
+    @Test
+    public void storageClasses() {
+        // Arrange
+        PackedRows rows = new PackedRows(new String[]{"null", "integer", "float", "text", "blob"});
+        byte[] blob = new byte[]{0, 1, -1};
+
+        // Act
+        rows.putNull();
+        rows.putLong(Long.MIN_VALUE);
+        rows.putDouble(-1.5);
+        rows.putString("hello 世界");
+        rows.putBlob(blob);
+        rows.endRow();
+        rows.putNull();
+        rows.putLong(Long.MAX_VALUE);
+        rows.putDouble(Double.NaN);
+        rows.putString("");
+        rows.putBlob(new byte[0]);
+        rows.endRow();
+        Decoded decoded = decode(rows.toByteArray());
+
+        // Assert
+        assertEquals(2, decoded.rows.size());
+        List<Object> row = decoded.rows.get(0);
+        assertNull(row.get(0));
+        assertEquals(Long.MIN_VALUE, row.get(1));
+        assertEquals(-1.5, row.get(2));
+        assertEquals("hello 世界", row.get(3));
+        assertArrayEquals(blob, (byte[]) row.get(4));
+        row = decoded.rows.get(1);
+        assertNull(row.get(0));
+        assertEquals(Long.MAX_VALUE, row.get(1));
+        assertEquals(Double.NaN, row.get(2));
+        assertEquals("", row.get(3));
+        assertArrayEquals(new byte[0], (byte[]) row.get(4));
+    }
+
+    @Test
+    public void growBuffer() {
+        // Arrange
+        PackedRows rows = new PackedRows(new String[]{"id", "data"}, 16);
+        byte[] blob = new byte[100];
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            rows.putLong(i);
+            rows.putBlob(blob);
+            rows.endRow();
+        }
+        Decoded decoded = decode(rows.toByteArray());
+
+        // Assert
+        assertEquals(100, decoded.rows.size());
+        assertEquals(99L, decoded.rows.get(99).get(0));
+        assertArrayEquals(blob, (byte[]) decoded.rows.get(99).get(1));
+    }
+
+    @Test
+    public void flushToFile() throws Exception {
+        // Arrange
+        File file = File.createTempFile("packed", ".bin");
+        PackedRows rows = new PackedRows(new String[]{"id"}, 16);
+
+        // Act
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            for (int i = 0; i < 10; i++) {
+                rows.putLong(i);
+                rows.endRow();
+                if (i % 3 == 0) {
+                    rows.flushTo(channel);
+                }
+            }
+            rows.finishTo(channel);
+        }
+        Decoded decoded = decode(Files.readAllBytes(file.toPath()));
+        file.delete();
+
+        // Assert
+        assertEquals(Arrays.asList("id"), decoded.columns);
+        assertEquals(10, decoded.rows.size());
+        assertEquals(9L, decoded.rows.get(9).get(0));
+    }
+}
@@ -3,6 +3,7 @@ package com.tekartik.sqflite;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -43,6 +44,15 @@ public class SqlCommandTest {
                 new byte[]{1, 2, 3}}, command.getSqlArguments());
     }
 
+    @Test
+    public void sqlArgumentsNormalizedOnce() {
+        List<Object> arguments = Arrays.asList((Object) Arrays.asList(1, 2, 255), null, true);
+        SqlCommand command = new SqlCommand(null, arguments);
+        Object[] sqlArguments = command.getSqlArguments();
+        assertArrayEquals(new Object[]{new byte[]{1, 2, -1}, null, true}, sqlArguments);
+        assertSame(sqlArguments, command.getSqlArguments());
+    }
+
     @Test
     public void equals() {
         SqlCommand command1 = new SqlCommand(null, null);
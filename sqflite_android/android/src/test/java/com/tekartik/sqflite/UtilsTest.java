@@ -4,7 +4,10 @@ import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Utils test
@@ -33,4 +36,19 @@ public class UtilsTest {
         assertEquals(country, locale.getCountry());
         assertEquals(variant, locale.getVariant());
     }
+
+    @Test
+    public void resultsSize() {
+        Map<String, Object> results = new HashMap<>();
+        results.put("rows", Arrays.asList(Arrays.asList(1L, "ab"), Arrays.asList(null, new byte[3])));
+        results.put("columnValues", Arrays.asList(new long[2], new double[1], new int[2]));
+        assertEquals(8 + 4 + 8 + 3 + 16 + 8 + 8, Utils.resultsSize(results));
+    }
+
+    @Test
+    public void limitSql() {
+        assertEquals("SELECT * FROM (SELECT * FROM Test\n) LIMIT 11", Utils.limitSql("SELECT * FROM Test", 11));
+        assertEquals("SELECT * FROM (SELECT 1 -- one\n) LIMIT 2", Utils.limitSql("SELECT 1 -- one", 2));
+        assertEquals("SELECT * FROM (SELECT 1\n) LIMIT 2", Utils.limitSql("SELECT 1 ;\n", 2));
+    }
 }
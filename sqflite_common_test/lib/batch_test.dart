@@ -2,6 +2,8 @@ import 'package:sqflite_common/sqlite_api.dart';
 import 'package:sqflite_common_test/sqflite_test.dart';
 import 'package:test/test.dart';
 
+import 'src/sqflite_import.dart';
+
 /// Run batch test.
 void run(SqfliteTestContext context, {bool noManualTransactionTest = false}) {
   final factory = context.databaseFactory;
@@ -180,6 +182,46 @@ void run(SqfliteTestContext context, {bool noManualTransactionTest = false}) {
       await db.close();
     }, skip: noManualTransactionTest);
 
+    test('atomic batch in manual transaction', () async {
+      var path = await context.initDeleteDb('atomic_batch_transaction.db');
+      var db = await factory.openDatabase(path);
+      try {
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+
+        Future<Object?> atomicBatch(List<String> tables) {
+          return factory.internalsInvokeMethod<Object?>('batch', {
+            paramId: db.databaseId,
+            'atomic': true,
+            'operations': [
+              for (var i = 0; i < tables.length; i++)
+                {
+                  'method': 'insert',
+                  'sql': 'INSERT INTO ${tables[i]} (name) VALUES (?)',
+                  'arguments': ['item${i + 1}'],
+                },
+            ],
+          });
+        }
+
+        // Dart transactions start with a raw BEGIN
+        await db.execute('BEGIN IMMEDIATE');
+        await atomicBatch(['Test']);
+        try {
+          // Fails on the second operation, the first one is rolled back
+          await atomicBatch(['Test', 'Dummy']);
+          fail('should fail');
+        } on DatabaseException catch (_) {}
+        await db.execute('COMMIT');
+        expect(await db.rawQuery('SELECT * FROM Test'), [
+          {'id': 1, 'name': 'item1'},
+        ]);
+      } finally {
+        await db.close();
+      }
+    }, skip: !context.isAndroid);
+
     test('Batch continue on error', () async {
       //await Sqflite.devSetDebugModeOn();
       var path = await context.initDeleteDb('batch_continue_on_error.db');
@@ -212,6 +254,39 @@ void run(SqfliteTestContext context, {bool noManualTransactionTest = false}) {
       }
     });
 
+    test('Batch repeated statements continue on error', () async {
+      var path = await context.initDeleteDb(
+        'batch_repeated_continue_on_error.db',
+      );
+      var db = await factory.openDatabase(path);
+      await db.execute('CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)');
+      try {
+        var batch = db.batch();
+        var insertSql = 'INSERT INTO Test (id, name) VALUES (?, ?)';
+        batch.rawInsert(insertSql, [1, 'item1']);
+        batch.rawInsert(insertSql, [2, 'item2']);
+        batch.rawInsert(insertSql, [1, 'item3']);
+        batch.rawInsert(insertSql, [3, 'item3']);
+        var updateSql = 'UPDATE Test SET name = ? WHERE id = ?';
+        batch.rawUpdate(updateSql, ['updated1', 1]);
+        batch.rawUpdate(updateSql, ['updated4', 4]);
+        batch.rawUpdate(updateSql, ['updated3', 3]);
+        var results = await batch.commit(continueOnError: true);
+        expect(results[0], 1);
+        expect(results[1], 2);
+        var exception = results[2] as DatabaseException;
+        expect(exception.isUniqueConstraintError(), true);
+        expect(results.sublist(3), [3, 1, 0, 1]);
+        expect(await db.query('Test'), [
+          {'id': 1, 'name': 'updated1'},
+          {'id': 2, 'name': 'item2'},
+          {'id': 3, 'name': 'updated3'},
+        ]);
+      } finally {
+        await db.close();
+      }
+    });
+
     test('Batch rolled back continue on error', () async {
       // Here we expect the batch to be rolled back even if continueOnError is true
       // since the transaction has been rolled back
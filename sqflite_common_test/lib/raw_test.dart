@@ -8,6 +8,8 @@ import 'package:sqflite_common/utils/utils.dart' as utils;
 import 'package:sqflite_common_test/sqflite_test.dart';
 import 'package:test/test.dart';
 
+import 'src/sqflite_import.dart';
+
 extension SqfliteDatabaseTextExt on Database {
   Future<Version> testGetSqliteVersion() async {
     var sqliteVersionText = (await rawQuery(
@@ -328,6 +330,507 @@ void run(SqfliteTestContext context) {
       await db.close();
     });
 
+    test('insertMany in transaction', () async {
+      var path = await context.initDeleteDb('insert_many_in_transaction.db');
+      var db = await factory.openDatabase(path);
+      try {
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+
+        Future<Object?> insertMany(List<List<Object?>> argumentsList) {
+          return factory.internalsInvokeMethod<Object?>('insertMany', {
+            paramId: db.databaseId,
+            'sql': 'INSERT INTO Test (name) VALUES (?)',
+            'argumentsList': argumentsList,
+          });
+        }
+
+        // Dart transactions start with a raw BEGIN
+        await db.execute('BEGIN IMMEDIATE');
+        var ids = await insertMany([
+          ['item1'],
+          ['item2'],
+        ]);
+        expect(ids, [1, 2]);
+        await db.execute('ROLLBACK');
+        expect(await db.rawQuery('SELECT * FROM Test'), isEmpty);
+
+        await db.execute('BEGIN IMMEDIATE');
+        await insertMany([
+          ['item1'],
+        ]);
+        await db.execute('COMMIT');
+        expect(await db.rawQuery('SELECT * FROM Test'), [
+          {'id': 1, 'name': 'item1'},
+        ]);
+      } finally {
+        await db.close();
+      }
+    }, skip: !context.isAndroid);
+
+    test('prepared statements', () async {
+      var path = await context.initDeleteDb('prepared_statements.db');
+      var db = await factory.openDatabase(path);
+      try {
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+
+        Future<T> invoke<T>(String method, Map<String, Object?> arguments) {
+          return factory.internalsInvokeMethod<T>(method, {
+            paramId: db.databaseId,
+            ...arguments,
+          });
+        }
+
+        var insertId = await invoke<int>('prepare', {
+          'sql': 'INSERT INTO Test (name) VALUES (?)',
+          'method': 'insert',
+        });
+        var queryId = await invoke<int>('prepare', {
+          'sql': 'SELECT name FROM Test WHERE id = ?',
+          'method': 'query',
+        });
+        expect(
+          await invoke<int>('executePrepared', {
+            'statementId': insertId,
+            'arguments': ['item1'],
+          }),
+          1,
+        );
+        var result = await invoke<Map>('queryPrepared', {
+          'statementId': queryId,
+          'arguments': [1],
+        });
+        expect(result['rows'], [
+          ['item1'],
+        ]);
+
+        // A write statement is not run as a query
+        await expectLater(
+          invoke<Object?>('queryPrepared', {
+            'statementId': insertId,
+            'arguments': ['item2'],
+          }),
+          throwsA(predicate((e) => '$e'.contains('not a query'))),
+        );
+        expect(await db.rawQuery('SELECT name FROM Test'), [
+          {'name': 'item1'},
+        ]);
+
+        await invoke<Object?>('finalize', {'statementId': insertId});
+        await invoke<Object?>('finalize', {'statementId': queryId});
+        await expectLater(
+          invoke<Object?>('queryPrepared', {
+            'statementId': queryId,
+            'arguments': [1],
+          }),
+          throwsA(predicate((e) => '$e'.contains('not found'))),
+        );
+      } finally {
+        await db.close();
+      }
+    }, skip: !context.isAndroid);
+
+    test('max result rows', () async {
+      // Applies to databases opened next
+      await factory.internalsInvokeMethod<Object?>(methodOptions, {
+        'androidMaxResultRows': 2,
+      });
+      var path = await context.initDeleteDb('max_result_rows.db');
+      var db = await factory.openDatabase(path);
+      try {
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+        await db.insert('Test', {'name': 'item1'});
+        await db.insert('Test', {'name': 'item2'});
+        expect(await db.rawQuery('SELECT name FROM Test'), [
+          {'name': 'item1'},
+          {'name': 'item2'},
+        ]);
+
+        await db.insert('Test', {'name': 'item3'});
+        await expectLater(
+          db.rawQuery('SELECT name FROM Test'),
+          throwsA(predicate((e) => '$e'.contains('result_too_large'))),
+        );
+        // Other queries are still run
+        expect(
+          await db.rawQuery('SELECT name FROM Test WHERE id > 1'),
+          hasLength(2),
+        );
+      } finally {
+        await db.close();
+        await factory.internalsInvokeMethod<Object?>(methodOptions, {
+          'androidMaxResultRows': 0,
+        });
+      }
+    }, skip: !context.isAndroid);
+
+    test('statement cache', () async {
+      // Applies to databases opened next
+      await factory.internalsInvokeMethod<Object?>(methodOptions, {
+        'androidStatementCacheSize': 4,
+      });
+      var path = await context.initDeleteDb('statement_cache.db');
+      var db = await factory.openDatabase(path);
+      try {
+        Future<T> invoke<T>(String method, Map<String, Object?> arguments) {
+          return factory.internalsInvokeMethod<T>(method, {
+            paramId: db.databaseId,
+            ...arguments,
+          });
+        }
+
+        Future<Object?> getCacheSize() async {
+          var map = await factory.internalsInvokeMethod<Map>('debug', {
+            'cmd': 'get',
+          });
+          var info = (map['databases'] as Map)['${db.databaseId}'] as Map;
+          return info['statementCacheSize'];
+        }
+
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+        await db.rawInsert('INSERT INTO Test (name) VALUES (?)', ['item1']);
+        await db.rawInsert('INSERT INTO Test (name) VALUES (?)', ['item2']);
+        expect(await getCacheSize(), 1);
+
+        // Schema changed by a prepared statement
+        var alterId = await invoke<int>('prepare', {
+          'sql': 'ALTER TABLE Test ADD COLUMN value INTEGER DEFAULT 1',
+          'method': 'execute',
+        });
+        await invoke<Object?>('executePrepared', {'statementId': alterId});
+        await invoke<Object?>('finalize', {'statementId': alterId});
+        expect(await getCacheSize(), 0);
+
+        await db.rawInsert('INSERT INTO Test (name) VALUES (?)', ['item3']);
+        expect(await db.rawQuery('SELECT name, value FROM Test WHERE id = 3'), [
+          {'name': 'item3', 'value': 1},
+        ]);
+      } finally {
+        await db.close();
+        await factory.internalsInvokeMethod<Object?>(methodOptions, {
+          'androidStatementCacheSize': 0,
+        });
+      }
+    }, skip: !context.isAndroid);
+
+    test('result file', () async {
+      var path = await context.initDeleteDb('result_file.db');
+      var db = await factory.openDatabase(path);
+      try {
+        Future<T> invoke<T>(String method, Map<String, Object?> arguments) {
+          return factory.internalsInvokeMethod<T>(method, {
+            paramId: db.databaseId,
+            ...arguments,
+          });
+        }
+
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+        await db.insert('Test', {'name': 'item1'});
+        await db.insert('Test', {'name': 'item2'});
+
+        var result = await invoke<Map>(methodQuery, {
+          'sql': 'SELECT id, name FROM Test',
+          'resultFile': true,
+          'resultFormat': 'json',
+        });
+        var filePath = result['resultFilePath'] as String;
+        expect(filePath, contains('/cache/'));
+        var file = File(filePath);
+        expect(file.lengthSync(), result['resultFileLength']);
+        expect(result['rowCount'], 2);
+        expect(jsonDecode(file.readAsStringSync()), [
+          {'id': 1, 'name': 'item1'},
+          {'id': 2, 'name': 'item2'},
+        ]);
+
+        await invoke<Object?>('deleteResultFile', {'resultFilePath': filePath});
+        expect(file.existsSync(), isFalse);
+
+        // Only packed and json rows can be written
+        await expectLater(
+          invoke<Object?>(methodQuery, {
+            'sql': 'SELECT id, name FROM Test',
+            'resultFile': true,
+            'resultFormat': 'columnar',
+          }),
+          throwsA(predicate((e) => '$e'.contains('bad_param'))),
+        );
+      } finally {
+        await db.close();
+      }
+    }, skip: !context.isAndroid);
+
+    test('cursor page max size', () async {
+      var path = await context.initDeleteDb('cursor_page_max_size.db');
+      var db = await factory.openDatabase(path);
+      try {
+        Future<T> invoke<T>(String method, Map<String, Object?> arguments) {
+          return factory.internalsInvokeMethod<T>(method, {
+            paramId: db.databaseId,
+            ...arguments,
+          });
+        }
+
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+        // 88 bytes per row, id and name
+        var name = 'x' * 40;
+        for (var i = 0; i < 4; i++) {
+          await db.insert('Test', {'name': name});
+        }
+
+        // Pages stop once over 150 bytes
+        var result = await invoke<Map>(methodQuery, {
+          'sql': 'SELECT id, name FROM Test',
+          'cursorPageMaxSize': 150,
+        });
+        expect(result['rows'], [
+          [1, name],
+          [2, name],
+        ]);
+        expect(result['cursorPageSize'], 2);
+        var cursorId = result['cursorId'] as int;
+
+        result = await invoke<Map>('queryCursorNext', {'cursorId': cursorId});
+        expect(result['rows'], [
+          [3, name],
+          [4, name],
+        ]);
+        expect(result['cursorId'], isNull);
+      } finally {
+        await db.close();
+      }
+    }, skip: !context.isAndroid);
+
+    test('cursor expiry and eviction', () async {
+      // Applies to databases opened next
+      await factory.internalsInvokeMethod<Object?>(methodOptions, {
+        'androidCursorIdleTimeout': 500,
+        'androidMaxCursorCount': 1,
+      });
+      var path = await context.initDeleteDb('cursor_expiry.db');
+      var db = await factory.openDatabase(path);
+      try {
+        Future<T> invoke<T>(String method, Map<String, Object?> arguments) {
+          return factory.internalsInvokeMethod<T>(method, {
+            paramId: db.databaseId,
+            ...arguments,
+          });
+        }
+
+        Future<int> openCursor() async {
+          var result = await invoke<Map>(methodQuery, {
+            'sql': 'SELECT name FROM Test',
+            'cursorPageSize': 1,
+          });
+          return result['cursorId'] as int;
+        }
+
+        Future<Map> cursorNext(int cursorId) {
+          return invoke<Map>('queryCursorNext', {'cursorId': cursorId});
+        }
+
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+        for (var i = 1; i <= 3; i++) {
+          await db.insert('Test', {'name': 'item$i'});
+        }
+
+        // The least recently used cursor is closed first
+        var cursorId1 = await openCursor();
+        var cursorId2 = await openCursor();
+        await expectLater(
+          cursorNext(cursorId1),
+          throwsA(predicate((e) => '$e'.contains('not found'))),
+        );
+        expect((await cursorNext(cursorId2))['rows'], [
+          ['item2'],
+        ]);
+
+        // Unused cursors are closed
+        await Future<void>.delayed(const Duration(milliseconds: 1500));
+        await expectLater(
+          cursorNext(cursorId2),
+          throwsA(predicate((e) => '$e'.contains('not found'))),
+        );
+
+        var map = await factory.internalsInvokeMethod<Map>('debug', {
+          'cmd': 'get',
+        });
+        var info = (map['databases'] as Map)['${db.databaseId}'] as Map;
+        expect(info['cursorCount'], 0);
+        expect(info['cursorEvictedCount'], 1);
+        expect(info['cursorExpiredCount'], 1);
+      } finally {
+        await db.close();
+        await factory.internalsInvokeMethod<Object?>(methodOptions, {
+          'androidCursorIdleTimeout': 0,
+          'androidMaxCursorCount': 0,
+        });
+      }
+    }, skip: !context.isAndroid);
+
+    test('cursor window pool', () async {
+      // Applies to databases opened next
+      await factory.internalsInvokeMethod<Object?>(methodOptions, {
+        'androidCursorWindowPoolSize': 2,
+        'androidCursorWindowSize': 4096,
+      });
+      var path = await context.initDeleteDb('cursor_window_pool.db');
+      var db = await factory.openDatabase(path);
+      try {
+        Future<T> invoke<T>(String method, Map<String, Object?> arguments) {
+          return factory.internalsInvokeMethod<T>(method, {
+            paramId: db.databaseId,
+            ...arguments,
+          });
+        }
+
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+        // Larger than a window
+        var batch = db.batch();
+        for (var i = 1; i <= 50; i++) {
+          batch.insert('Test', {'name': 'item$i' * 20});
+        }
+        await batch.commit(noResult: true);
+        var expectedNames = [for (var i = 1; i <= 50; i++) 'item$i' * 20];
+
+        // Windows reused by the next queries
+        for (var i = 0; i < 3; i++) {
+          var rows = await db.rawQuery('SELECT name FROM Test');
+          expect(rows.map((row) => row['name']), expectedNames);
+        }
+
+        // A window kept by an open cursor is not shared
+        var result = await invoke<Map>(methodQuery, {
+          'sql': 'SELECT name FROM Test',
+          'cursorPageSize': 20,
+        });
+        var names = [for (var row in result['rows'] as List) row[0]];
+        while (result['cursorId'] != null) {
+          var rows = await db.rawQuery('SELECT name FROM Test');
+          expect(rows.map((row) => row['name']), expectedNames);
+          result = await invoke<Map>('queryCursorNext', {
+            'cursorId': result['cursorId'],
+          });
+          names.addAll([for (var row in result['rows'] as List) row[0]]);
+        }
+        expect(names, expectedNames);
+      } finally {
+        await db.close();
+        await factory.internalsInvokeMethod<Object?>(methodOptions, {
+          'androidCursorWindowPoolSize': 0,
+          'androidCursorWindowSize': 0,
+        });
+      }
+    }, skip: !context.isAndroid);
+
+    test('cursor columns once', () async {
+      var path = await context.initDeleteDb('cursor_columns_once.db');
+      var db = await factory.openDatabase(path);
+      try {
+        Future<T> invoke<T>(String method, Map<String, Object?> arguments) {
+          return factory.internalsInvokeMethod<T>(method, {
+            paramId: db.databaseId,
+            ...arguments,
+          });
+        }
+
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+        for (var i = 1; i <= 3; i++) {
+          await db.insert('Test', {'name': 'item$i'});
+        }
+
+        Future<List<Map>> readPages(bool columnsOnce) async {
+          var result = await invoke<Map>(methodQuery, {
+            'sql': 'SELECT id, name FROM Test',
+            'cursorPageSize': 1,
+            'columnsOnce': columnsOnce,
+          });
+          var pages = [result];
+          while (result['cursorId'] != null) {
+            result = await invoke<Map>('queryCursorNext', {
+              'cursorId': result['cursorId'],
+            });
+            pages.add(result);
+          }
+          return pages;
+        }
+
+        var pages = await readPages(true);
+        expect(pages.map((page) => page['columns']), [
+          ['id', 'name'],
+          null,
+          null,
+        ]);
+        expect(pages.map((page) => page['rows']), [
+          [
+            [1, 'item1'],
+          ],
+          [
+            [2, 'item2'],
+          ],
+          [
+            [3, 'item3'],
+          ],
+        ]);
+
+        // Sent with every page by default
+        pages = await readPages(false);
+        expect(pages.map((page) => page['columns']), [
+          ['id', 'name'],
+          ['id', 'name'],
+          ['id', 'name'],
+        ]);
+      } finally {
+        await db.close();
+      }
+    }, skip: !context.isAndroid);
+
+    test('query stream without listener', () async {
+      var path = await context.initDeleteDb('query_stream_no_listener.db');
+      var db = await factory.openDatabase(path);
+      try {
+        await db.execute(
+          'CREATE TABLE Test (id INTEGER PRIMARY KEY, name TEXT)',
+        );
+        await db.insert('Test', {'name': 'item1'});
+        await db.insert('Test', {'name': 'item2'});
+
+        // Pages would be lost, the query fails
+        await expectLater(
+          factory.internalsInvokeMethod<Map>(methodQuery, {
+            paramId: db.databaseId,
+            'sql': 'SELECT name FROM Test',
+            'cursorPageSize': 1,
+            'stream': true,
+          }),
+          throwsA(predicate((e) => '$e'.contains('No query stream listener'))),
+        );
+        expect(await db.rawQuery('SELECT name FROM Test'), [
+          {'name': 'item1'},
+          {'name': 'item2'},
+        ]);
+      } finally {
+        await db.close();
+      }
+    }, skip: !context.isAndroid);
+
     test('Open twice', () async {
       // utils.devSetDebugModeOn(true);
       var path = await context.initDeleteDb('open_twice.db');